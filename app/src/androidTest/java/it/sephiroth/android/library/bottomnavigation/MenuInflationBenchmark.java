@@ -0,0 +1,89 @@
+package it.sephiroth.android.library.bottomnavigation;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import it.sephiroth.android.library.bottomnavigation.app.BottomNavigationMenus;
+import it.sephiroth.android.library.bottomnavigation.app.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the menus created by the generated BottomNavigationMenus factories
+ * against the ones inflated at runtime by MenuParser. Timings are only logged.
+ */
+@RunWith (AndroidJUnit4.class)
+@LargeTest
+public class MenuInflationBenchmark {
+    private static final String TAG = "MenuInflationBenchmark";
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void generatedMenuMatchesInflatedMenu() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        // both share the template cache, empty it so that each one builds its own template
+        MenuParser.Companion.clearCache();
+        final MenuParser.Menu inflated = MenuParser.Companion.inflateMenu(context, R.menu.bottombar_menu_3items_no_background);
+        MenuParser.Companion.clearCache();
+        final MenuParser.Menu generated = BottomNavigationMenus.INSTANCE.bottombarMenu3itemsNoBackground(context);
+
+        assertNotNull(inflated);
+        assertEquals(inflated.getItemsCount(), generated.getItemsCount());
+        assertEquals(inflated.getBadgeColor(), generated.getBadgeColor());
+        assertEquals(inflated.getItemAnimationDuration(), generated.getItemAnimationDuration());
+        assertEquals(inflated.getBackground(), generated.getBackground());
+        assertEquals(inflated.getColorActive(), generated.getColorActive());
+        assertEquals(inflated.getColorInactive(), generated.getColorInactive());
+
+        for (int i = 0; i < inflated.getItemsCount(); i++) {
+            final BottomNavigationItem a = inflated.getItemAt(i);
+            final BottomNavigationItem b = generated.getItemAt(i);
+            assertEquals(a.toString(), b.toString());
+        }
+    }
+
+    @Test
+    public void compareInflation() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        for (int i = 0; i < WARMUP; i++) {
+            MenuParser.Companion.clearCache();
+            MenuParser.Companion.inflateMenu(context, R.menu.bottombar_menu_3items_no_background);
+            MenuParser.Companion.clearCache();
+            BottomNavigationMenus.INSTANCE.bottombarMenu3itemsNoBackground(context);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            MenuParser.Companion.clearCache();
+            assertNotNull(MenuParser.Companion.inflateMenu(context, R.menu.bottombar_menu_3items_no_background));
+        }
+        final long parsed = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            MenuParser.Companion.clearCache();
+            assertNotNull(BottomNavigationMenus.INSTANCE.bottombarMenu3itemsNoBackground(context));
+        }
+        final long generated = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertNotNull(BottomNavigationMenus.INSTANCE.bottombarMenu3itemsNoBackground(context));
+        }
+        final long cached = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "inflateMenu (parsed): " + parsed + "ns");
+        Log.i(TAG, "generated factory: " + generated + "ns");
+        Log.i(TAG, "generated factory (cached): " + cached + "ns");
+    }
+}
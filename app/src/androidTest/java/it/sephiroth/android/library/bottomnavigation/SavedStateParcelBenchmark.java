@@ -0,0 +1,134 @@
+package it.sephiroth.android.library.bottomnavigation;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.Log;
+import android.view.View;
+import androidx.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the BottomNavigation saved state parcel against the previous encoding
+ * (a Bundle holding a Serializable HashSet of badge ids plus a boxed list of disabled indices).
+ * Sizes are asserted, timings are only logged.
+ */
+@RunWith (AndroidJUnit4.class)
+@LargeTest
+public class SavedStateParcelBenchmark {
+    private static final String TAG = "SavedStateParcelBench";
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    private static final int SELECTED_INDEX = 2;
+    private static final int[] DISABLED = {1, 3};
+    private static final int[] BADGE_IDS = {0x7f080001, 0x7f080002, 0x7f080003, 0x7f080004};
+    private static final int[] BADGE_COUNTS = {1, 0, 12, 99};
+
+    @Test
+    public void roundTrip() {
+        final BottomNavigation.SavedState state = readState(writeState());
+        assertEquals(SELECTED_INDEX, state.getSelectedIndex());
+        assertEquals((1 << 1) | (1 << 3), state.getDisabledMask());
+        assertArrayEquals(BADGE_IDS, state.getBadgeIds());
+        assertArrayEquals(BADGE_COUNTS, state.getBadgeCounts());
+    }
+
+    @Test
+    public void compareEncodings() {
+        final Parcel legacy = writeLegacy();
+        final Parcel current = writeState();
+        final int legacySize = legacy.dataSize();
+        final int currentSize = current.dataSize();
+        legacy.recycle();
+        current.recycle();
+
+        for (int i = 0; i < WARMUP; i++) {
+            readLegacy(writeLegacy());
+            readState(writeState());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            readLegacy(writeLegacy());
+        }
+        final long legacyTime = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            readState(writeState());
+        }
+        final long currentTime = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i(TAG, "legacy: " + legacySize + " bytes, " + legacyTime + "ns");
+        Log.i(TAG, "current: " + currentSize + " bytes, " + currentTime + "ns");
+
+        // timings are only logged, they depend on the device load
+        assertTrue("parcel is bigger than the legacy one", currentSize < legacySize);
+    }
+
+    private static Parcel writeState() {
+        final BottomNavigation.SavedState state = new BottomNavigation.SavedState(View.BaseSavedState.EMPTY_STATE);
+        state.setSelectedIndex(SELECTED_INDEX);
+        int mask = 0;
+        for (int index : DISABLED) {
+            mask |= 1 << index;
+        }
+        state.setDisabledMask(mask);
+        state.setBadgeIds(BADGE_IDS);
+        state.setBadgeCounts(BADGE_COUNTS);
+
+        final Parcel parcel = Parcel.obtain();
+        state.writeToParcel(parcel, 0);
+        return parcel;
+    }
+
+    private static BottomNavigation.SavedState readState(final Parcel parcel) {
+        parcel.setDataPosition(0);
+        final BottomNavigation.SavedState state = BottomNavigation.SavedState.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+        return state;
+    }
+
+    private static Parcel writeLegacy() {
+        final HashSet<Integer> badges = new HashSet<>();
+        for (int id : BADGE_IDS) {
+            badges.add(id);
+        }
+        final Bundle bundle = new Bundle();
+        bundle.putSerializable("map", badges);
+
+        final ArrayList<Integer> disabled = new ArrayList<>();
+        for (int index : DISABLED) {
+            disabled.add(index);
+        }
+
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(View.BaseSavedState.EMPTY_STATE, 0);
+        parcel.writeInt(SELECTED_INDEX);
+        parcel.writeBundle(bundle);
+        parcel.writeList(disabled);
+        return parcel;
+    }
+
+    private static void readLegacy(final Parcel parcel) {
+        parcel.setDataPosition(0);
+        final ClassLoader classLoader = SavedStateParcelBenchmark.class.getClassLoader();
+        parcel.readParcelable(classLoader);
+        parcel.readInt();
+        final Bundle bundle = parcel.readBundle(classLoader);
+        bundle.getSerializable("map");
+        final ArrayList<Integer> disabled = new ArrayList<>();
+        parcel.readList(disabled, classLoader);
+        parcel.recycle();
+    }
+}
@@ -93,8 +93,10 @@ public class MainActivity extends BaseActivity implements BottomNavigation.OnMen
         if (null == savedInstanceState) {
             getBottomNavigation().setDefaultSelectedIndex(0);
             final BadgeProvider provider = getBottomNavigation().getBadgeProvider();
+            provider.beginBatch();
             provider.show(R.id.bbn_item3);
             provider.show(R.id.bbn_item4);
+            provider.commitBatch();
         }
     }
 
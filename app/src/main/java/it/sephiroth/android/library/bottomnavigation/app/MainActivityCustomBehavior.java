@@ -9,13 +9,13 @@ import android.view.ViewGroup;
 import com.github.clans.fab.FloatingActionMenu;
 import com.google.android.material.snackbar.Snackbar;
 
-import java.util.List;
-
+import androidx.annotation.NonNull;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import it.sephiroth.android.library.bottomnavigation.BadgeProvider;
 import it.sephiroth.android.library.bottomnavigation.BottomBehavior;
 import it.sephiroth.android.library.bottomnavigation.BottomNavigation;
 import it.sephiroth.android.library.bottomnavigation.MiscUtils;
+import it.sephiroth.android.library.bottomnavigation.NavigationOffset;
 
 import static android.util.Log.INFO;
 
@@ -62,6 +62,19 @@ public class MainActivityCustomBehavior extends MainActivity {
     }
 
     public static class FabBehavior extends CoordinatorLayout.Behavior<FloatingActionMenu> {
+        private FloatingActionMenu fab;
+        private View snackbar;
+        private BottomNavigation navigation;
+
+        private final NavigationOffset.Listener offsetListener = new NavigationOffset.Listener() {
+            @Override
+            public void onNavigationOffsetChanged(@NonNull final NavigationOffset offset) {
+                if (null != fab) {
+                    update(fab);
+                }
+            }
+        };
+
         public FabBehavior() {
             super();
         }
@@ -73,33 +86,51 @@ public class MainActivityCustomBehavior extends MainActivity {
         @Override
         public boolean layoutDependsOn(final CoordinatorLayout parent, final FloatingActionMenu child, final View dependency) {
             if (BottomNavigation.class.isInstance(dependency)) {
-                return true;
+                // follow the navigation offset, published once per frame
+                fab = child;
+                setNavigation((BottomNavigation) dependency);
+                return false;
             } else if (Snackbar.SnackbarLayout.class.isInstance(dependency)) {
                 return true;
             }
             return super.layoutDependsOn(parent, child, dependency);
         }
 
+        private void setNavigation(final BottomNavigation newNavigation) {
+            if (navigation != newNavigation) {
+                if (null != navigation) {
+                    navigation.getOffset().removeListener(offsetListener);
+                }
+                navigation = newNavigation;
+                if (null != navigation) {
+                    navigation.getOffset().addListener(offsetListener);
+                }
+            }
+        }
+
         @Override
         public boolean onDependentViewChanged(
             final CoordinatorLayout parent, final FloatingActionMenu child, final View dependency) {
             MiscUtils.INSTANCE.log(INFO, "onDependentViewChanged: " + dependency);
+            snackbar = dependency;
+            return update(child);
+        }
 
-            final List<View> list = parent.getDependencies(child);
+        private boolean update(final FloatingActionMenu child) {
             int bottomMargin = ((ViewGroup.MarginLayoutParams) child.getLayoutParams()).bottomMargin;
 
             float t = 0;
             boolean result = false;
 
-            for (View dep : list) {
-                if (Snackbar.SnackbarLayout.class.isInstance(dep)) {
-                    t += dep.getTranslationY() - dep.getHeight();
-                    result = true;
-                } else if (BottomNavigation.class.isInstance(dep)) {
-                    BottomNavigation navigation = (BottomNavigation) dep;
-                    t += navigation.getTranslationY() - navigation.getHeight() + bottomMargin;
-                    result = true;
-                }
+            if (null != snackbar) {
+                t += snackbar.getTranslationY() - snackbar.getHeight();
+                result = true;
+            }
+
+            if (null != navigation) {
+                final NavigationOffset offset = navigation.getOffset();
+                t += offset.getTranslation() - offset.getHeight() + bottomMargin;
+                result = true;
             }
 
             child.setTranslationY(t);
@@ -110,6 +141,10 @@ public class MainActivityCustomBehavior extends MainActivity {
         public void onDependentViewRemoved(
             final CoordinatorLayout parent, final FloatingActionMenu child, final View dependency) {
             super.onDependentViewRemoved(parent, child, dependency);
+            if (snackbar == dependency) {
+                snackbar = null;
+                update(child);
+            }
         }
     }
 }
@@ -3,6 +3,7 @@ package it.sephiroth.android.library.bottomnavigation.app;
 import android.app.Application;
 
 import it.sephiroth.android.library.bottomnavigation.BottomNavigation;
+import it.sephiroth.android.library.bottomnavigation.app.providers.CustomBadgeProvider;
 import timber.log.Timber;
 
 public class MainApplication extends Application {
@@ -15,5 +16,7 @@ public class MainApplication extends Application {
             Timber.plant(new Timber.DebugTree());
             BottomNavigation.Companion.setDEBUG(true);
         }
+
+        BottomNavigation.registerBadgeProvider(CustomBadgeProvider.class, CustomBadgeProvider::new);
     }
 }
@@ -3,6 +3,7 @@ package it.sephiroth.android.library.bottomnavigation.app.behaviors;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Message;
+import androidx.annotation.NonNull;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import com.google.android.material.snackbar.Snackbar;
 import androidx.core.view.ViewCompat;
@@ -11,12 +12,27 @@ import android.view.View;
 
 import com.github.clans.fab.FloatingActionMenu;
 
+import it.sephiroth.android.library.bottomnavigation.BottomNavigation;
+import it.sephiroth.android.library.bottomnavigation.NavigationOffset;
+
 public class FloatingActionMenuBehavior extends CoordinatorLayout.Behavior<FloatingActionMenu> {
     private static final int HIDE_MSG = 1;
     private static final int SHOW_MSG = 2;
     private static final String TAG = FloatingActionMenuBehavior.class.getSimpleName();
 
     private float mFabTranslationY;
+    private FloatingActionMenu mFab;
+    private View mSnackbar;
+    private BottomNavigation mNavigation;
+
+    private final NavigationOffset.Listener mOffsetListener = new NavigationOffset.Listener() {
+        @Override
+        public void onNavigationOffsetChanged(@NonNull final NavigationOffset offset) {
+            if (null != mFab) {
+                updateFabTranslation(mFab);
+            }
+        }
+    };
 
     private final Handler handler = new Handler() {
         @Override
@@ -41,14 +57,32 @@ public class FloatingActionMenuBehavior extends CoordinatorLayout.Behavior<Float
 
     @Override
     public boolean layoutDependsOn(final CoordinatorLayout parent, final FloatingActionMenu child, final View dependency) {
+        if (dependency instanceof BottomNavigation) {
+            // the navigation position is received from its offset channel
+            mFab = child;
+            setNavigation((BottomNavigation) dependency);
+            return false;
+        }
         return dependency instanceof Snackbar.SnackbarLayout;
     }
 
+    private void setNavigation(final BottomNavigation navigation) {
+        if (mNavigation != navigation) {
+            if (null != mNavigation) {
+                mNavigation.getOffset().removeListener(mOffsetListener);
+            }
+            mNavigation = navigation;
+            if (null != mNavigation) {
+                mNavigation.getOffset().addListener(mOffsetListener);
+            }
+        }
+    }
+
     @Override
     public boolean onDependentViewChanged(final CoordinatorLayout parent, final FloatingActionMenu child, final View dependency) {
         if (dependency instanceof Snackbar.SnackbarLayout) {
-            updateFabTranslationForSnackbar(parent, child, dependency);
-            ViewCompat.setTranslationY(child, mFabTranslationY);
+            mSnackbar = dependency;
+            updateFabTranslation(child);
         }
         return false;
     }
@@ -56,15 +90,22 @@ public class FloatingActionMenuBehavior extends CoordinatorLayout.Behavior<Float
     @Override
     public void onDependentViewRemoved(final CoordinatorLayout parent, final FloatingActionMenu child, final View dependency) {
         super.onDependentViewRemoved(parent, child, dependency);
+        if (mSnackbar == dependency) {
+            mSnackbar = null;
+            updateFabTranslation(child);
+        }
     }
 
-    private void updateFabTranslationForSnackbar(CoordinatorLayout parent, final FloatingActionMenu fab, View snackbar) {
-        mFabTranslationY = getFabTranslationYForSnackbar(parent, fab, snackbar);
-    }
-
-    private float getFabTranslationYForSnackbar(CoordinatorLayout parent, FloatingActionMenu fab, View snackbar) {
+    private void updateFabTranslation(final FloatingActionMenu fab) {
         float minOffset = 0;
-        minOffset = Math.min(minOffset, ViewCompat.getTranslationY(snackbar) - snackbar.getHeight());
-        return minOffset;
+        if (null != mSnackbar) {
+            minOffset = Math.min(minOffset, ViewCompat.getTranslationY(mSnackbar) - mSnackbar.getHeight());
+        }
+        if (null != mNavigation) {
+            final NavigationOffset offset = mNavigation.getOffset();
+            minOffset = Math.min(minOffset, offset.getTranslation() - offset.getHeight());
+        }
+        mFabTranslationY = minOffset;
+        ViewCompat.setTranslationY(fab, mFabTranslationY);
     }
 }
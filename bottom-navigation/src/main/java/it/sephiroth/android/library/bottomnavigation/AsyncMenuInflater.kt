@@ -0,0 +1,95 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.content.Context
+import android.graphics.Typeface
+import android.util.Log.VERBOSE
+import android.view.Choreographer
+import androidx.annotation.MenuRes
+import it.sephiroth.android.library.bottomnavigation.MiscUtils.log
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Parses menu resources on a background thread and hands the result
+ * back to the main thread on the next frame.
+ *
+ * Must be used from the main thread.
+ */
+internal class AsyncMenuInflater {
+    private val generation = AtomicInteger()
+    private var request: Request? = null
+
+    /**
+     * @param tablet when not null the menu colors are resolved on the background thread as well,
+     * using the passed tablet mode
+     * @param typeface the typeface used to pre-measure the item labels
+     * @param callback invoked on the main thread with the parsed menu
+     */
+    fun inflate(context: Context, @MenuRes menuResId: Int, tablet: Boolean?, typeface: Typeface?,
+                callback: (MenuParser.Menu?) -> Unit) {
+        cancel()
+        // the main thread choreographer, the result is posted to it from the background thread
+        val current = Request(generation.get(), Choreographer.getInstance(), context, menuResId, tablet, typeface, callback)
+        current.future = MiscUtils.backgroundExecutor.submit(current)
+        request = current
+    }
+
+    /**
+     * Cancel the current pending request, if any. The callback won't be invoked.
+     */
+    fun cancel() {
+        generation.incrementAndGet()
+        request?.let {
+            log(VERBOSE, "cancel pending menu inflation")
+            it.future?.cancel(false)
+            it.choreographer.removeFrameCallback(it)
+        }
+        request = null
+    }
+
+    private inner class Request(
+            private val token: Int,
+            val choreographer: Choreographer,
+            private val context: Context,
+            @MenuRes private val menuResId: Int,
+            private val tablet: Boolean?,
+            private val typeface: Typeface?,
+            private val callback: (MenuParser.Menu?) -> Unit) : Runnable, Choreographer.FrameCallback {
+
+        var future: Future<*>? = null
+
+        @Volatile
+        private var result: MenuParser.Menu? = null
+
+        override fun run() {
+            val menu = MenuParser.inflateMenu(context, menuResId)
+
+            if (null != menu && null != tablet) {
+                menu.setTabletMode(tablet)
+                menu.getColorActive()
+                menu.getColorInactive()
+                menu.getColorDisabled()
+                menu.getRippleColor()
+            }
+
+            if (null != menu) {
+                IconCache.preload(context, menu)
+                LabelMetricsCache.precompute(context, menu, typeface)
+            }
+
+            result = menu
+
+            if (token == generation.get()) {
+                choreographer.postFrameCallback(this)
+            }
+        }
+
+        override fun doFrame(frameTimeNanos: Long) {
+            if (token != generation.get() || request !== this) {
+                return
+            }
+            request = null
+            callback(result)
+        }
+    }
+}
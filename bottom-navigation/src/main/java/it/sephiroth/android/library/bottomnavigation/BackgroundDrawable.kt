@@ -0,0 +1,169 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.annotation.SuppressLint
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.ColorFilter
+import android.graphics.Paint
+import android.graphics.PixelFormat
+import android.graphics.Rect
+import android.graphics.drawable.Drawable
+import android.view.Gravity
+import android.view.animation.DecelerateInterpolator
+
+/**
+ * Background of the [BottomNavigation]: the base color, the edge decoration (the top shadow, or the
+ * divider in tablet mode) and the circular color reveal played when a colored item is selected.
+ *
+ * The reveal is driven by the navigation [TransitionDriver]. A reveal started while another one is
+ * running continues from the current radius instead of restarting from the item center.
+ *
+ * @param edgeGravity the side where the [edge] drawable is placed
+ * @param edgeSize height (or width in tablet mode) of the edge decoration
+ */
+internal class BackgroundDrawable(
+        private val driver: TransitionDriver,
+        private val edge: Drawable?,
+        private val edgeGravity: Int,
+        private val edgeSize: Int) : Drawable() {
+
+    private val paint = Paint()
+    private val revealPaint = Paint(Paint.ANTI_ALIAS_FLAG)
+    private val colorBounds = Rect()
+    private var baseColor: Int = 0
+    private var revealColor: Int = 0
+    private var baseAlpha: Int = ALPHA_MAX
+
+    private var revealX: Float = 0f
+    private var revealY: Float = 0f
+    private var startRadius: Float = 0f
+    private var finalRadius: Float = 0f
+    private var radius: Float = 0f
+
+    private val transition = object : TransitionDriver.Transition() {
+        override fun onUpdate(fraction: Float) {
+            radius = startRadius + (finalRadius - startRadius) * fraction
+            invalidateSelf()
+        }
+
+        override fun onEnd() {
+            baseColor = revealColor
+            invalidateSelf()
+        }
+    }
+
+    /**
+     * Current base color. Setting it stops the running reveal, if any.
+     */
+    var color: Int
+        get() = baseColor
+        set(value) {
+            driver.cancel(transition)
+            if (baseColor != value) {
+                baseColor = value
+                invalidateSelf()
+            }
+        }
+
+    /**
+     * Reveal the new color with a circle growing from the given point
+     */
+    fun reveal(color: Int, x: Float, y: Float, duration: Long) {
+        if (!transition.isRunning) {
+            if (baseColor == color) {
+                return
+            }
+            radius = START_RADIUS
+        }
+
+        revealColor = color
+        revealX = x
+        revealY = y
+        startRadius = radius
+        finalRadius = farthestCornerDistance(x, y)
+
+        if (startRadius >= finalRadius) {
+            this.color = color
+            return
+        }
+
+        val remaining = 1f - startRadius / finalRadius
+        driver.start(transition, (duration * remaining).toLong(), INTERPOLATOR)
+        invalidateSelf()
+    }
+
+    private fun farthestCornerDistance(x: Float, y: Float): Float {
+        val dx = Math.max(x - colorBounds.left, colorBounds.right - x)
+        val dy = Math.max(y - colorBounds.top, colorBounds.bottom - y)
+        return Math.sqrt((dx * dx + dy * dy).toDouble()).toFloat()
+    }
+
+    @SuppressLint("RtlHardcoded")
+    override fun onBoundsChange(bounds: Rect) {
+        super.onBoundsChange(bounds)
+        colorBounds.set(bounds)
+
+        when (edgeGravity) {
+            Gravity.TOP -> {
+                edge?.setBounds(bounds.left, bounds.top, bounds.right, bounds.top + edgeSize)
+                colorBounds.top += edgeSize
+            }
+            Gravity.LEFT -> {
+                edge?.setBounds(bounds.left, bounds.top, bounds.left + edgeSize, bounds.bottom)
+                colorBounds.left += edgeSize
+            }
+            Gravity.RIGHT -> {
+                edge?.setBounds(bounds.right - edgeSize, bounds.top, bounds.right, bounds.bottom)
+                colorBounds.right -= edgeSize
+            }
+        }
+    }
+
+    override fun draw(canvas: Canvas) {
+        edge?.draw(canvas)
+        applyColor(paint, baseColor)
+        canvas.drawRect(colorBounds, paint)
+
+        if (transition.isRunning) {
+            applyColor(revealPaint, revealColor)
+            val saveCount = canvas.save()
+            canvas.clipRect(colorBounds)
+            canvas.drawCircle(revealX, revealY, radius, revealPaint)
+            canvas.restoreToCount(saveCount)
+        }
+    }
+
+    private fun applyColor(paint: Paint, color: Int) {
+        paint.color = color
+        paint.alpha = Color.alpha(color) * baseAlpha / ALPHA_MAX
+    }
+
+    override fun setAlpha(alpha: Int) {
+        if (baseAlpha != alpha) {
+            baseAlpha = alpha
+            edge?.alpha = alpha
+            invalidateSelf()
+        }
+    }
+
+    override fun getAlpha(): Int {
+        return baseAlpha
+    }
+
+    override fun setColorFilter(colorFilter: ColorFilter?) {
+        paint.colorFilter = colorFilter
+        revealPaint.colorFilter = colorFilter
+        edge?.colorFilter = colorFilter
+        invalidateSelf()
+    }
+
+    override fun getOpacity(): Int {
+        return PixelFormat.TRANSLUCENT
+    }
+
+    companion object {
+        private const val START_RADIUS = 10f
+        private const val ALPHA_MAX = 255
+        private val INTERPOLATOR = DecelerateInterpolator()
+    }
+}
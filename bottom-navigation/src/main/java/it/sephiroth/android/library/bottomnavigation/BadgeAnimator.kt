@@ -0,0 +1,184 @@
+package it.sephiroth.android.library.bottomnavigation
+
+/**
+ * Animation state of a single badge: enter, exit and count-change animations.
+ *
+ * The animator only asks its [Host] for frames while something is actually changing:
+ * once an animation completes it invalidates one last time and becomes idle, with no
+ * pending frame requests. Time is always provided by the host (frame time), this class
+ * does not depend on the Android framework.
+ */
+@Suppress("unused")
+class BadgeAnimator(private val host: Host) {
+
+    interface Host {
+        /**
+         * Request a call to [doFrame] on the next frame
+         */
+        fun requestFrame()
+
+        /**
+         * The badge needs to be redrawn using the current [alpha] and [scale]
+         */
+        fun invalidate()
+    }
+
+    enum class Effect {
+        NONE, FADE, SCALE, FADE_AND_SCALE
+    }
+
+    var enterEffect: Effect = Effect.FADE
+    var enterDuration: Long = DEFAULT_ENTER_DURATION
+    var exitEffect: Effect = Effect.FADE
+    var exitDuration: Long = DEFAULT_EXIT_DURATION
+
+    /**
+     * Duration of the "pulse" played when the badge content changes. 0 to disable it.
+     */
+    var changeDuration: Long = DEFAULT_CHANGE_DURATION
+
+    /**
+     * Current opacity, 0..1
+     */
+    var alpha: Float = 0f
+        private set
+
+    /**
+     * Current scale, 1 when idle and visible
+     */
+    var scale: Float = 0f
+        private set
+
+    /**
+     * true when the badge is, or is becoming, visible
+     */
+    var isShown: Boolean = false
+        private set
+
+    val isIdle: Boolean
+        get() = state == STATE_IDLE
+
+    private var state = STATE_IDLE
+    private var startTimeNanos: Long = -1
+    private var frameRequested: Boolean = false
+
+    fun show() {
+        if (isShown && state != STATE_EXIT) {
+            return
+        }
+        isShown = true
+        start(if (enterDuration > 0 && enterEffect != Effect.NONE) STATE_ENTER else STATE_IDLE)
+    }
+
+    fun hide() {
+        if (!isShown) {
+            return
+        }
+        isShown = false
+        start(if (exitDuration > 0 && exitEffect != Effect.NONE) STATE_EXIT else STATE_IDLE)
+    }
+
+    /**
+     * Play the change animation, if the badge is visible
+     */
+    fun change() {
+        if (!isShown || state == STATE_ENTER || changeDuration <= 0) {
+            return
+        }
+        start(STATE_CHANGE)
+    }
+
+    /**
+     * Jump to the end of the current animation
+     */
+    fun finish() {
+        if (state != STATE_IDLE) {
+            start(STATE_IDLE)
+        }
+    }
+
+    fun doFrame(frameTimeNanos: Long) {
+        frameRequested = false
+        if (state == STATE_IDLE) {
+            return
+        }
+
+        if (startTimeNanos < 0) {
+            startTimeNanos = frameTimeNanos
+        }
+
+        val duration = when (state) {
+            STATE_ENTER -> enterDuration
+            STATE_EXIT -> exitDuration
+            else -> changeDuration
+        }
+        val fraction = Math.min(1f, (frameTimeNanos - startTimeNanos) / NANOS_PER_MS / duration)
+
+        if (fraction >= 1f) {
+            state = STATE_IDLE
+            applyIdle()
+        } else {
+            apply(fraction)
+            requestFrame()
+        }
+        host.invalidate()
+    }
+
+    private fun start(newState: Int) {
+        state = newState
+        startTimeNanos = -1
+
+        if (newState == STATE_IDLE) {
+            applyIdle()
+            host.invalidate()
+        } else {
+            apply(0f)
+            requestFrame()
+        }
+    }
+
+    private fun requestFrame() {
+        if (!frameRequested) {
+            frameRequested = true
+            host.requestFrame()
+        }
+    }
+
+    private fun applyIdle() {
+        alpha = if (isShown) 1f else 0f
+        scale = if (isShown) 1f else 0f
+    }
+
+    private fun apply(fraction: Float) {
+        when (state) {
+            STATE_ENTER -> {
+                val value = 1f - (1f - fraction) * (1f - fraction)
+                alpha = if (enterEffect == Effect.SCALE) 1f else value
+                scale = if (enterEffect == Effect.FADE) 1f else value
+            }
+            STATE_EXIT -> {
+                val value = 1f - fraction * fraction
+                alpha = if (exitEffect == Effect.SCALE) 1f else value
+                scale = if (exitEffect == Effect.FADE) 1f else value
+            }
+            STATE_CHANGE -> {
+                alpha = 1f
+                scale = 1f + CHANGE_SCALE * Math.sin(Math.PI * fraction).toFloat()
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_ENTER_DURATION = 100L
+        const val DEFAULT_EXIT_DURATION = 100L
+        const val DEFAULT_CHANGE_DURATION = 150L
+
+        private const val CHANGE_SCALE = 0.2f
+        private const val NANOS_PER_MS = 1000000f
+
+        private const val STATE_IDLE = 0
+        private const val STATE_ENTER = 1
+        private const val STATE_EXIT = 2
+        private const val STATE_CHANGE = 3
+    }
+}
@@ -1,63 +1,159 @@
 package it.sephiroth.android.library.bottomnavigation
 
 import android.graphics.Canvas
+import android.graphics.Color
 import android.graphics.ColorFilter
 import android.graphics.Paint
 import android.graphics.PixelFormat
+import android.graphics.RectF
+import android.graphics.Typeface
 import android.graphics.drawable.Drawable
-import android.os.SystemClock
+import android.view.Choreographer
 
 /**
  * Created by crugnola on 4/12/16.
  *
  * The MIT License
+ *
+ * @param size the size of the badge without a count (a dot)
+ * @param countSize the height of the badge when a count is displayed
+ * @param textSize the text size of the count
  */
-class BadgeDrawable(color: Int, private val size: Int) : Drawable() {
+class BadgeDrawable @JvmOverloads constructor(
+        color: Int,
+        private val size: Int,
+        private val countSize: Int = size,
+        textSize: Float = countSize * DEFAULT_TEXT_RATIO,
+        textColor: Int = Color.WHITE) : Drawable(), BadgeAnimator.Host, Choreographer.FrameCallback {
     private val paint = Paint(Paint.ANTI_ALIAS_FLAG)
-    private var startTimeMillis: Long = 0
+    private val textPaint = Paint(Paint.ANTI_ALIAS_FLAG or Paint.SUBPIXEL_TEXT_FLAG)
+    private val textAlpha: Int = Color.alpha(textColor)
+    private val rect = RectF()
+    private var baseAlpha: Int = ALPHA_MAX.toInt()
+    private var countWidth: Int = 0
+
+    /**
+     * Enter, exit and change animations of this badge
+     */
+    val animator = BadgeAnimator(this)
+
+    var animating: Boolean
+        get() = !animator.isIdle
+        set(value) {
+            if (!value) {
+                animator.finish()
+            }
+        }
+
+    /**
+     * Badge color. Updated in place, the drawable is redrawn only if it changes
+     */
+    var color: Int = color
+        set(value) {
+            if (field != value) {
+                field = value
+                paint.color = value
+                invalidateSelf()
+            }
+        }
 
-    var animating: Boolean = true
+    /**
+     * Number displayed in the badge, 0 to display a simple dot.
+     * Values greater than [BadgeTextCache.MAX_COUNT] are displayed as "99+"
+     */
+    var count: Int = 0
+        set(value) {
+            val newValue = Math.max(0, value)
+            if (field != newValue) {
+                val previous = field
+                field = newValue
+                countWidth = if (newValue > 0) {
+                    Math.max(countSize, Math.ceil(BadgeTextCache.width(textPaint, newValue) + countSize / 2.0).toInt())
+                } else 0
+
+                if (previous > 0 && newValue > 0 && animator.isShown) {
+                    animator.change()
+                } else {
+                    invalidateSelf()
+                }
+            }
+        }
 
     init {
         this.paint.color = color
+        this.textPaint.color = textColor
+        this.textPaint.textSize = textSize
+        this.textPaint.typeface = Typeface.DEFAULT_BOLD
+        this.animator.show()
     }
 
-    override fun draw(canvas: Canvas) {
-        if (!animating) {
-            paint.alpha = ALPHA_MAX.toInt()
-            drawInternal(canvas)
-        } else {
-            if (startTimeMillis == 0L) {
-                startTimeMillis = SystemClock.uptimeMillis()
-            }
+    /**
+     * Play the exit animation. The badge won't be drawn anymore once completed.
+     */
+    fun hide() {
+        animator.hide()
+    }
 
-            val normalized = (SystemClock.uptimeMillis() - startTimeMillis) / FADE_DURATION
-            if (normalized >= 1f) {
-                animating = false
-                paint.alpha = ALPHA_MAX.toInt()
-                drawInternal(canvas)
-            } else {
-                val partialAlpha = (ALPHA_MAX * normalized).toInt()
-                alpha = partialAlpha
-                drawInternal(canvas)
-            }
+    /**
+     * Returns true if the badge is, or is becoming, visible
+     */
+    val isShown: Boolean
+        get() = animator.isShown
+
+    override fun requestFrame() {
+        Choreographer.getInstance().postFrameCallback(this)
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        animator.doFrame(frameTimeNanos)
+    }
+
+    override fun invalidate() {
+        invalidateSelf()
+    }
+
+    override fun draw(canvas: Canvas) {
+        val alpha = (baseAlpha * animator.alpha).toInt()
+        val scale = animator.scale
+        if (alpha <= 0 || scale <= 0f) {
+            return
         }
+        paint.alpha = alpha
+        drawInternal(canvas, scale, alpha)
     }
 
-    private fun drawInternal(canvas: Canvas) {
+    private fun drawInternal(canvas: Canvas, scale: Float, alpha: Int) {
         val bounds = bounds
         val w = bounds.width()
         val h = bounds.height()
-        canvas.drawCircle((bounds.centerX() + w / 2).toFloat(), (bounds.centerY() - h / 2).toFloat(), (w / 2).toFloat(), paint)
+        val cx = (bounds.centerX() + w / 2).toFloat()
+        val cy = (bounds.centerY() - h / 2).toFloat()
+
+        if (count == 0) {
+            canvas.drawCircle(cx, cy, w / 2 * scale, paint)
+            return
+        }
+
+        val saveCount = canvas.save()
+        canvas.scale(scale, scale, cx, cy)
+
+        val radius = h / 2f
+        rect.set(cx - w / 2f, cy - radius, cx + w / 2f, cy + radius)
+        canvas.drawRoundRect(rect, radius, radius, paint)
+
+        textPaint.alpha = alpha * textAlpha / ALPHA_MAX.toInt()
+        canvas.drawText(BadgeTextCache.label(count), cx - BadgeTextCache.width(textPaint, count) / 2,
+                cy + BadgeTextCache.baselineOffset(textPaint), textPaint)
+        canvas.restoreToCount(saveCount)
     }
 
     override fun setAlpha(alpha: Int) {
-        paint.alpha = alpha
+        baseAlpha = alpha
         invalidateSelf()
     }
 
     override fun getAlpha(): Int {
-        return paint.alpha
+        return baseAlpha
     }
 
     override fun isStateful(): Boolean {
@@ -74,15 +170,16 @@ class BadgeDrawable(color: Int, private val size: Int) : Drawable() {
     }
 
     override fun getIntrinsicHeight(): Int {
-        return size
+        return if (count > 0) countSize else size
     }
 
     override fun getIntrinsicWidth(): Int {
-        return size
+        return if (count > 0) countWidth else size
     }
 
     companion object {
         const val FADE_DURATION = 100f
         const val ALPHA_MAX = 255f
+        private const val DEFAULT_TEXT_RATIO = 0.65f
     }
 }
@@ -2,9 +2,10 @@ package it.sephiroth.android.library.bottomnavigation
 
 import android.graphics.drawable.Drawable
 import android.os.Bundle
+import android.os.Looper
+import android.util.SparseArray
 import androidx.annotation.IdRes
 import it.sephiroth.android.library.bottonnavigation.R
-import java.util.*
 
 /**
  * Created by alessandro crugnola on 4/12/16.
@@ -15,20 +16,70 @@ import java.util.*
 
 @Suppress("unused")
 open class BadgeProvider(private val navigation: BottomNavigation) {
-    private val map = HashSet<Int>()
     private val badgeSize: Int = navigation.context.resources.getDimensionPixelSize(R.dimen.bbn_badge_size)
+    private val badgeCountSize: Int = navigation.context.resources.getDimensionPixelSize(R.dimen.bbn_badge_count_size)
+    private val badgeTextSize: Float = navigation.context.resources.getDimension(R.dimen.bbn_badge_text_size)
 
+    /**
+     * Long-lived badge drawables, one per menu item id
+     */
+    private val drawables = SparseArray<Drawable>()
+
+    /**
+     * Drawables released by a previous menu, reused before creating new ones
+     */
+    private val pool = ArrayList<Drawable>()
+
+    private var batchDepth: Int = 0
+    private var attached: Boolean = false
+
+    private val storeListener = object : BadgeStore.Listener {
+        override fun onBadgesChanged(store: BadgeStore, changedIds: IntArray, size: Int) {
+            for (i in 0 until size) {
+                navigation.invalidateBadge(changedIds[i])
+            }
+        }
+    }
+
+    /**
+     * Badges state. Can be replaced with a store shared with other navigation components,
+     * which can then be updated from any thread.
+     */
+    var store: BadgeStore = BadgeStore()
+        set(value) {
+            if (field !== value) {
+                if (attached) {
+                    field.removeListener(storeListener)
+                    value.addListener(storeListener)
+                }
+                // move the open batch, if any, to the new store
+                for (i in 0 until batchDepth) {
+                    value.beginBatch()
+                    field.commitBatch()
+                }
+                field = value
+                invalidateAll()
+            }
+        }
+
+    /**
+     * The badges are saved by [BottomNavigation] together with its own state
+     */
+    @Deprecated("The badges state is saved by BottomNavigation")
     fun save(): Bundle {
         val bundle = Bundle()
-        bundle.putSerializable("map", map)
+        val state = store.snapshot()
+        bundle.putIntArray(KEY_IDS, state.ids)
+        bundle.putIntArray(KEY_COUNTS, state.counts)
         return bundle
     }
 
-    @Suppress("UNCHECKED_CAST")
+    @Deprecated("The badges state is restored by BottomNavigation")
     fun restore(bundle: Bundle) {
-        val set = bundle.getSerializable("map")
-        if (null != set && set is HashSet<*>) {
-            map.addAll(set as HashSet<Int>)
+        val ids = bundle.getIntArray(KEY_IDS)
+        val counts = bundle.getIntArray(KEY_COUNTS)
+        if (null != ids && null != counts && ids.size == counts.size) {
+            store.set(ids, counts)
         }
     }
 
@@ -39,27 +90,172 @@ open class BadgeProvider(private val navigation: BottomNavigation) {
      * @return true if the menu item has to draw a badge
      */
     fun hasBadge(@IdRes itemId: Int): Boolean {
-        return map.contains(itemId)
+        return store.hasBadge(itemId)
+    }
+
+    /**
+     * Returns the number displayed in the item badge, 0 if none
+     *
+     * @param itemId the menu item id
+     */
+    fun getBadgeCount(@IdRes itemId: Int): Int {
+        return store.getCount(itemId)
     }
 
+    /**
+     * Returns the badge drawable of the item, if visible. The same instance is returned
+     * as long as the item is part of the menu, its state being updated in place.
+     */
     internal fun getBadge(@IdRes itemId: Int): Drawable? {
-        return if (map.contains(itemId)) {
-            newDrawable(itemId, navigation.menu!!.badgeColor)
-        } else null
+        if (!store.hasBadge(itemId)) {
+            return null
+        }
+
+        val preferredColor = navigation.menu!!.badgeColor
+        var drawable = drawables.get(itemId)
+
+        if (null == drawable || !updateDrawable(drawable, itemId, preferredColor)) {
+            drawable = obtainDrawable(itemId, preferredColor)
+            drawables.put(itemId, drawable)
+        }
+        return drawable
+    }
+
+    private fun obtainDrawable(@IdRes itemId: Int, preferredColor: Int): Drawable {
+        while (pool.isNotEmpty()) {
+            val drawable = pool.removeAt(pool.size - 1)
+            if (updateDrawable(drawable, itemId, preferredColor)) {
+                return drawable
+            }
+        }
+        val drawable = newDrawable(itemId, preferredColor)
+        updateDrawable(drawable, itemId, preferredColor)
+        return drawable
     }
 
     protected open fun newDrawable(@IdRes itemId: Int, preferredColor: Int): Drawable {
-        return BadgeDrawable(preferredColor, badgeSize)
+        return BadgeDrawable(preferredColor, badgeSize, badgeCountSize, badgeTextSize)
+    }
+
+    /**
+     * Update an existing drawable, previously created by [newDrawable], with the current
+     * state of the item badge.
+     *
+     * @return false if the drawable cannot be reused, a new one will be created then
+     */
+    protected open fun updateDrawable(drawable: Drawable, @IdRes itemId: Int, preferredColor: Int): Boolean {
+        if (drawable is BadgeDrawable) {
+            drawable.color = preferredColor
+            drawable.count = store.getCount(itemId)
+            drawable.animator.show()
+            return true
+        }
+        return false
+    }
+
+    /**
+     * Drawables of the items no longer part of the menu are moved to the pool
+     */
+    internal fun onMenuChanged(menu: MenuParser.Menu) {
+        var i = drawables.size() - 1
+        while (i >= 0) {
+            val itemId = drawables.keyAt(i)
+            if (!menu.hasItem(itemId)) {
+                val drawable = drawables.valueAt(i)
+                drawable.callback = null
+                drawables.removeAt(i)
+                if (pool.size < MAX_POOL_SIZE) {
+                    pool.add(drawable)
+                }
+            }
+            i--
+        }
+    }
+
+    internal fun onAttached() {
+        if (!attached) {
+            attached = true
+            store.addListener(storeListener)
+            invalidateAll()
+        }
+    }
+
+    internal fun onDetached() {
+        if (attached) {
+            attached = false
+            store.removeListener(storeListener)
+        }
+    }
+
+    private fun invalidateAll() {
+        val menu = navigation.menu ?: return
+        for (i in 0 until menu.itemsCount) {
+            navigation.invalidateBadge(menu.getItemAt(i).id)
+        }
+    }
+
+    /**
+     * Start collecting badge changes: [show] and [remove] calls are applied together,
+     * on the next frame, once [commitBatch] is called. Batches can be nested.
+     */
+    fun beginBatch() {
+        batchDepth++
+        store.beginBatch()
+    }
+
+    /**
+     * Close the batch opened by [beginBatch], the collected changes are applied on the next frame
+     */
+    fun commitBatch() {
+        if (batchDepth == 0) {
+            throw IllegalStateException("commitBatch called without beginBatch")
+        }
+
+        batchDepth--
+        store.commitBatch()
+    }
+
+    /**
+     * Apply all the badge changes made in [block] in a single pass, on the next frame
+     */
+    inline fun edit(block: BadgeProvider.() -> Unit) {
+        beginBatch()
+        try {
+            block()
+        } finally {
+            commitBatch()
+        }
+    }
+
+    /**
+     * Outside of a batch, changes made on the main thread are applied immediately
+     */
+    private fun applyChanges() {
+        if (batchDepth == 0 && attached && Looper.myLooper() == Looper.getMainLooper()) {
+            store.flush()
+        }
     }
 
     /**
-     * Request to display a new badge over the passed menu item id
+     * Request to display a new badge over the passed menu item id.
+     * Like all the other badge changes, it can be called from any thread.
      *
      * @param itemId the menu item id
      */
     fun show(@IdRes itemId: Int) {
-        map.add(itemId)
-        navigation.invalidateBadge(itemId)
+        show(itemId, 0)
+    }
+
+    /**
+     * Display a badge with a number over the passed menu item id.
+     * Numbers greater than 99 are displayed as "99+".
+     *
+     * @param itemId the menu item id
+     * @param count the number to display, 0 to display a simple badge
+     */
+    fun show(@IdRes itemId: Int, count: Int) {
+        store.show(itemId, count)
+        applyChanges()
     }
 
     /**
@@ -68,8 +264,13 @@ open class BadgeProvider(private val navigation: BottomNavigation) {
      * @param itemId the menu item id
      */
     open fun remove(@IdRes itemId: Int) {
-        if (map.remove(itemId)) {
-            navigation.invalidateBadge(itemId)
-        }
+        store.remove(itemId)
+        applyChanges()
+    }
+
+    companion object {
+        private const val MAX_POOL_SIZE = 5
+        private const val KEY_IDS = "badgeIds"
+        private const val KEY_COUNTS = "badgeCounts"
     }
 }
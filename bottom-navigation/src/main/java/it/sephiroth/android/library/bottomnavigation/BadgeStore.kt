@@ -0,0 +1,277 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.os.Handler
+import android.os.Looper
+import android.view.Choreographer
+import androidx.annotation.IdRes
+import java.util.*
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Badge state (visible badges and their counts) which can be written from any thread.
+ *
+ * State is an immutable snapshot swapped atomically on every write, so readers and writers
+ * never lock. Writes are coalesced and dispatched to the [Listener]s once per frame, on the
+ * main thread: the difference with the previously dispatched state is computed once and
+ * shared by all the listeners. While a batch is open (see [BadgeProvider.beginBatch]) nothing is
+ * dispatched, the collected changes are flushed once the batch is committed. The same store can be
+ * used by several [BadgeProvider]s (see [BadgeProvider.store]).
+ */
+@Suppress("unused")
+class BadgeStore {
+
+    interface Listener {
+        /**
+         * Invoked on the main thread with the ids of the badges changed since the last call
+         *
+         * @param changedIds item ids, only the first [size] elements are valid. Do not keep a reference to the array.
+         */
+        fun onBadgesChanged(store: BadgeStore, changedIds: IntArray, size: Int)
+    }
+
+    /**
+     * Immutable snapshot, item ids sorted ascending
+     */
+    internal class State(val ids: IntArray, val counts: IntArray) {
+        fun indexOf(itemId: Int): Int = Arrays.binarySearch(ids, itemId)
+    }
+
+    private val state = AtomicReference(EMPTY)
+    private val flushPending = AtomicBoolean(false)
+    private val flushDeferred = AtomicBoolean(false)
+    private val batchDepth = AtomicInteger(0)
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    // main thread only
+    private val listeners = ArrayList<Listener>()
+    private var dispatched: State = EMPTY
+    private var changedIds = IntArray(0)
+    private val choreographer: Choreographer by lazy { Choreographer.getInstance() }
+
+    private val frameCallback = Choreographer.FrameCallback { flush() }
+    private val postFrameCallback = Runnable { choreographer.postFrameCallback(frameCallback) }
+
+    /**
+     * Returns true if the item has a visible badge
+     */
+    fun hasBadge(@IdRes itemId: Int): Boolean {
+        return state.get().indexOf(itemId) >= 0
+    }
+
+    /**
+     * Returns the number displayed in the item badge, 0 if none
+     */
+    fun getCount(@IdRes itemId: Int): Int {
+        val current = state.get()
+        val index = current.indexOf(itemId)
+        return if (index >= 0) current.counts[index] else 0
+    }
+
+    /**
+     * Show the item badge, with an optional count. Can be called from any thread.
+     */
+    @JvmOverloads
+    fun show(@IdRes itemId: Int, count: Int = 0) {
+        val value = Math.max(0, count)
+        while (true) {
+            val current = state.get()
+            val index = current.indexOf(itemId)
+            if (index >= 0 && current.counts[index] == value) {
+                return
+            }
+
+            val next = if (index >= 0) {
+                val counts = current.counts.copyOf()
+                counts[index] = value
+                State(current.ids, counts)
+            } else {
+                val insert = -index - 1
+                State(insertAt(current.ids, insert, itemId), insertAt(current.counts, insert, value))
+            }
+
+            if (state.compareAndSet(current, next)) {
+                requestFlush()
+                return
+            }
+        }
+    }
+
+    /**
+     * Remove the item badge. Can be called from any thread.
+     */
+    fun remove(@IdRes itemId: Int) {
+        while (true) {
+            val current = state.get()
+            val index = current.indexOf(itemId)
+            if (index < 0) {
+                return
+            }
+
+            val next = State(removeAt(current.ids, index), removeAt(current.counts, index))
+            if (state.compareAndSet(current, next)) {
+                requestFlush()
+                return
+            }
+        }
+    }
+
+    /**
+     * Remove all the badges. Can be called from any thread.
+     */
+    fun clear() {
+        if (state.getAndSet(EMPTY) !== EMPTY) {
+            requestFlush()
+        }
+    }
+
+    internal fun snapshot(): State = state.get()
+
+    /**
+     * Replace the whole state, used when restoring a saved state
+     */
+    internal fun set(ids: IntArray, counts: IntArray) {
+        val sortedIds = ids.copyOf()
+        val sortedCounts = IntArray(counts.size)
+        sortedIds.sort()
+        for (i in ids.indices) {
+            sortedCounts[Arrays.binarySearch(sortedIds, ids[i])] = counts[i]
+        }
+        state.set(State(sortedIds, sortedCounts))
+        requestFlush()
+    }
+
+    /**
+     * Main thread only
+     */
+    fun addListener(listener: Listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener)
+        }
+    }
+
+    /**
+     * Main thread only
+     */
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+
+    internal fun beginBatch() {
+        batchDepth.incrementAndGet()
+    }
+
+    /**
+     * Close a batch opened by [beginBatch], the changes collected meanwhile are dispatched on the next frame
+     */
+    internal fun commitBatch() {
+        if (batchDepth.decrementAndGet() == 0 && flushDeferred.getAndSet(false)) {
+            postFlush()
+        }
+    }
+
+    /**
+     * Dispatch the pending changes on the next frame, or once the current batch is committed
+     */
+    internal fun requestFlush() {
+        if (batchDepth.get() > 0) {
+            flushDeferred.set(true)
+            // the batch could have been committed meanwhile
+            if (batchDepth.get() > 0 || !flushDeferred.getAndSet(false)) {
+                return
+            }
+        }
+        postFlush()
+    }
+
+    private fun postFlush() {
+        if (flushPending.compareAndSet(false, true)) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                choreographer.postFrameCallback(frameCallback)
+            } else {
+                mainHandler.post(postFrameCallback)
+            }
+        }
+    }
+
+    /**
+     * Dispatch the pending changes now. Main thread only.
+     */
+    internal fun flush() {
+        flushPending.set(false)
+
+        val current = state.get()
+        val previous = dispatched
+        if (current === previous) {
+            return
+        }
+        dispatched = current
+
+        val size = diff(previous, current)
+        if (size == 0) {
+            return
+        }
+
+        var i = listeners.size - 1
+        while (i >= 0) {
+            listeners[i].onBadgesChanged(this, changedIds, size)
+            i--
+        }
+    }
+
+    /**
+     * Collect into [changedIds] the ids whose state differs between the two snapshots
+     */
+    private fun diff(previous: State, current: State): Int {
+        val capacity = previous.ids.size + current.ids.size
+        if (changedIds.size < capacity) {
+            changedIds = IntArray(capacity)
+        }
+
+        var size = 0
+        var i = 0
+        var j = 0
+        while (i < previous.ids.size || j < current.ids.size) {
+            val a = if (i < previous.ids.size) previous.ids[i] else Int.MAX_VALUE
+            val b = if (j < current.ids.size) current.ids[j] else Int.MAX_VALUE
+            when {
+                i < previous.ids.size && (j >= current.ids.size || a < b) -> {
+                    changedIds[size++] = a
+                    i++
+                }
+                j < current.ids.size && (i >= previous.ids.size || b < a) -> {
+                    changedIds[size++] = b
+                    j++
+                }
+                else -> {
+                    if (previous.counts[i] != current.counts[j]) {
+                        changedIds[size++] = a
+                    }
+                    i++
+                    j++
+                }
+            }
+        }
+        return size
+    }
+
+    companion object {
+        private val EMPTY = State(IntArray(0), IntArray(0))
+
+        private fun insertAt(array: IntArray, index: Int, value: Int): IntArray {
+            val result = IntArray(array.size + 1)
+            System.arraycopy(array, 0, result, 0, index)
+            result[index] = value
+            System.arraycopy(array, index, result, index + 1, array.size - index)
+            return result
+        }
+
+        private fun removeAt(array: IntArray, index: Int): IntArray {
+            val result = IntArray(array.size - 1)
+            System.arraycopy(array, 0, result, 0, index)
+            System.arraycopy(array, index + 1, result, index, array.size - index - 1)
+            return result
+        }
+    }
+}
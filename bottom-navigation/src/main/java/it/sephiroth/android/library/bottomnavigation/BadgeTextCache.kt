@@ -0,0 +1,71 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.graphics.Paint
+import android.util.SparseArray
+
+/**
+ * Shared labels and measurements of the count badges.
+ *
+ * Counts above [MAX_COUNT] are displayed as "99+", so there is a small fixed set of
+ * labels: each one is created and measured once per text size and then reused by every
+ * badge. Main thread only.
+ */
+internal object BadgeTextCache {
+    const val MAX_COUNT = 99
+
+    private val labels = arrayOfNulls<String>(MAX_COUNT + 2)
+    private val metrics = SparseArray<Metrics>()
+
+    private class Metrics(val widths: FloatArray, val baselineOffset: Float)
+
+    private fun index(count: Int): Int {
+        return Math.max(0, Math.min(count, MAX_COUNT + 1))
+    }
+
+    /**
+     * Returns the label of the given count
+     */
+    fun label(count: Int): String {
+        val index = index(count)
+        var label = labels[index]
+        if (null == label) {
+            label = if (count > MAX_COUNT) "$MAX_COUNT+" else count.toString()
+            labels[index] = label
+        }
+        return label
+    }
+
+    /**
+     * Returns the width of the count label, measured with the given paint
+     */
+    fun width(paint: Paint, count: Int): Float {
+        val metrics = getMetrics(paint)
+        val index = index(count)
+        var width = metrics.widths[index]
+        if (width < 0) {
+            width = paint.measureText(label(count))
+            metrics.widths[index] = width
+        }
+        return width
+    }
+
+    /**
+     * Returns the distance between the vertical center of the text and its baseline
+     */
+    fun baselineOffset(paint: Paint): Float {
+        return getMetrics(paint).baselineOffset
+    }
+
+    private fun getMetrics(paint: Paint): Metrics {
+        val key = java.lang.Float.floatToIntBits(paint.textSize)
+        var result = metrics.get(key)
+        if (null == result) {
+            val fontMetrics = paint.fontMetrics
+            val widths = FloatArray(MAX_COUNT + 2)
+            widths.fill(-1f)
+            result = Metrics(widths, -(fontMetrics.ascent + fontMetrics.descent) / 2)
+            metrics.put(key, result)
+        }
+        return result
+    }
+}
@@ -9,8 +9,9 @@ import android.view.ViewConfiguration
 import android.view.ViewGroup.MarginLayoutParams
 import androidx.coordinatorlayout.widget.CoordinatorLayout
 import androidx.core.view.ViewCompat
-import androidx.core.view.ViewPropertyAnimatorCompat
-import androidx.interpolator.view.animation.LinearOutSlowInInterpolator
+import androidx.dynamicanimation.animation.DynamicAnimation
+import androidx.dynamicanimation.animation.SpringAnimation
+import androidx.dynamicanimation.animation.SpringForce
 import com.google.android.material.snackbar.Snackbar.SnackbarLayout
 import it.sephiroth.android.library.bottomnavigation.BottomNavigation.Companion.PENDING_ACTION_ANIMATE_ENABLED
 import it.sephiroth.android.library.bottomnavigation.BottomNavigation.Companion.PENDING_ACTION_NONE
@@ -29,10 +30,30 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
     private var enabled: Boolean = false
 
     /**
-     * show/hide animation duration
+     * show/hide animation duration, used to tune the spring stiffness
      */
     private val animationDuration: Int
 
+    /**
+     * when true the snackbar is offset, instead of changing its bottom margin
+     */
+    private val translateSnackbar: Boolean
+
+    /**
+     * when true the navigation translation follows the nested scroll, see [followNestedScroll]
+     */
+    private val followScroll: Boolean
+
+    /**
+     * Minimum fling velocity used to snap the navigation in [followScroll] mode
+     */
+    private val minimumFlingVelocity: Int
+
+    /**
+     * true while the navigation is being moved by a nested scroll, in [followScroll] mode
+     */
+    private var dragging = false
+
     /**
      * bottom inset when TRANSLUCENT_NAVIGATION is turned on
      */
@@ -59,9 +80,10 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
     private val scaledTouchSlop: Int
 
     /**
-     * hide/show animator
+     * hide/show animation. A spring, so that a new target can be set while running
+     * without restarting the motion or losing its velocity
      */
-    private var animator: ViewPropertyAnimatorCompat? = null
+    private var animator: SpringAnimation? = null
 
     /**
      * current visibility status
@@ -77,6 +99,17 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
 
     protected var snackbarDependentView: SnackBarDependentView? = null
 
+    private var navigation: BottomNavigation? = null
+
+    /**
+     * In [translateSnackbar] mode the snackbar follows the navigation offset at every frame
+     */
+    private val offsetListener = object : NavigationOffset.Listener {
+        override fun onNavigationOffsetChanged(offset: NavigationOffset) {
+            navigation?.let { snackbarDependentView?.onNavigationMoved(it) }
+        }
+    }
+
     val isExpanded: Boolean
         get() = !hidden
 
@@ -86,7 +119,10 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
         this.scrollEnabled = true
         this.animationDuration =
                 array.getInt(R.styleable.BottomNavigationBehavior_bbn_animationDuration, context.resources.getInteger(R.integer.bbn_hide_animation_duration))
+        this.translateSnackbar = array.getBoolean(R.styleable.BottomNavigationBehavior_bbn_translateSnackbar, false)
+        this.followScroll = array.getBoolean(R.styleable.BottomNavigationBehavior_bbn_followScroll, false)
         this.scaledTouchSlop = ViewConfiguration.get(context).scaledTouchSlop * 2
+        this.minimumFlingVelocity = ViewConfiguration.get(context).scaledMinimumFlingVelocity
         this.offset = 0
         array.recycle()
         Timber.v("scrollable: $isScrollable, duration: $animationDuration, touchSlop: $scaledTouchSlop")
@@ -106,6 +142,12 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
         Timber.v("height: $height, translucent: $translucentNavigation, maxOffset: $maxOffset, bottomInset: $bottomInset")
     }
 
+    override fun onDetachedFromLayoutParams() {
+        super.onDetachedFromLayoutParams()
+        navigation?.offset?.removeListener(offsetListener)
+        navigation = null
+    }
+
     override fun layoutDependsOn(parent: CoordinatorLayout, child: BottomNavigation, dependency: View): Boolean {
         Timber.v("layoutDependsOn: $dependency")
 
@@ -121,6 +163,12 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
     override fun onLayoutChild(parent: CoordinatorLayout, abl: BottomNavigation, layoutDirection: Int): Boolean {
         val handled = super.onLayoutChild(parent, abl, layoutDirection)
 
+        if (translateSnackbar && navigation !== abl) {
+            navigation?.offset?.removeListener(offsetListener)
+            navigation = abl
+            abl.offset.addListener(offsetListener)
+        }
+
         val pendingAction = abl.pendingAction
         if (pendingAction != PENDING_ACTION_NONE) {
             val animate = pendingAction and PENDING_ACTION_ANIMATE_ENABLED != 0
@@ -150,7 +198,7 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
     override fun onDependentViewChanged(parent: CoordinatorLayout, child: BottomNavigation, dependency: View): Boolean {
         if (isSnackbar(dependency)) {
             if (null == snackbarDependentView) {
-                snackbarDependentView = SnackBarDependentView(dependency as SnackbarLayout, height, bottomInset)
+                snackbarDependentView = SnackBarDependentView(dependency as SnackbarLayout, height, bottomInset, translateSnackbar)
             }
             return snackbarDependentView!!.onDependentViewChanged(parent, child)
         }
@@ -175,6 +223,11 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
             }
         }
 
+        // in follow mode the navigation snaps on fling, the following non-touch scroll is ignored
+        if (followScroll && type != ViewCompat.TYPE_TOUCH) {
+            return false
+        }
+
         return super.onStartNestedScroll(coordinatorLayout, child, directTargetChild, target, nestedScrollAxes, type)
     }
 
@@ -183,6 +236,11 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
             @ViewCompat.NestedScrollType type: Int) {
         super.onStopNestedScroll(coordinatorLayout, child, target, type)
         offset = 0
+
+        if (dragging && type == ViewCompat.TYPE_TOUCH) {
+            dragging = false
+            snap(coordinatorLayout, child, child.translationY < maxOffset / 2f)
+        }
     }
 
     override fun onDirectionNestedPreScroll(
@@ -198,6 +256,11 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
             ViewCompat.stopNestedScroll(target)
         }
 
+        if (followScroll) {
+            followNestedScroll(child, dy)
+            return
+        }
+
         offset += dy
 
         if (BottomNavigation.DEBUG) {
@@ -218,6 +281,14 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
             @ScrollDirection scrollDirection: Int): Boolean {
         Timber.v("onNestedDirectionFling($velocityY, $scrollDirection)")
 
+        if (followScroll) {
+            if (Math.abs(velocityY) > minimumFlingVelocity && enabled && isScrollable && scrollEnabled) {
+                dragging = false
+                snap(coordinatorLayout, child, velocityY < 0)
+            }
+            return true
+        }
+
         if (Math.abs(velocityY) > 1000) {
             handleDirection(coordinatorLayout, child, scrollDirection)
         }
@@ -241,6 +312,37 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
         }
     }
 
+    /**
+     * Move the navigation by the scroll delta, within its [maxOffset] range. No animation is involved.
+     */
+    private fun followNestedScroll(child: BottomNavigation, dy: Int) {
+        if (!enabled || !isScrollable || !scrollEnabled || dy == 0) {
+            return
+        }
+
+        val current = child.translationY
+        val translation = Math.max(0f, Math.min(maxOffset.toFloat(), current + dy))
+        if (translation != current) {
+            if (!dragging) {
+                dragging = true
+                animator?.cancel()
+            }
+            child.translationY = translation
+        }
+    }
+
+    /**
+     * Complete a [followNestedScroll] drag, animating the navigation to its closest state. The listener
+     * is notified only if the expanded state changed.
+     */
+    private fun snap(coordinatorLayout: CoordinatorLayout, child: BottomNavigation, expanded: Boolean) {
+        val changed = hidden == expanded
+        animateOffset(coordinatorLayout, child, if (expanded) 0 else maxOffset, true)
+        if (changed) {
+            listener?.onExpandStatusChanged(expanded, true)
+        }
+    }
+
     protected fun setExpanded(
             coordinatorLayout: CoordinatorLayout, child: BottomNavigation, expanded: Boolean, animate: Boolean) {
         Timber.v("setExpanded($expanded)")
@@ -248,6 +350,7 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
         listener?.onExpandStatusChanged(expanded, animate)
     }
 
+    @Suppress("UNUSED_PARAMETER")
     private fun animateOffset(
             coordinatorLayout: CoordinatorLayout,
             child: BottomNavigation,
@@ -256,24 +359,27 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
 
         Timber.v("animateOffset($offset)")
         hidden = offset != 0
-        ensureOrCancelAnimator(coordinatorLayout, child)
 
         if (animate) {
-            animator?.translationY(offset.toFloat())?.start()
+            ensureAnimator(child).animateToFinalPosition(offset.toFloat())
         } else {
+            animator?.cancel()
             child.translationY = offset.toFloat()
         }
     }
 
-    @Suppress("UNUSED_PARAMETER")
-    private fun ensureOrCancelAnimator(coordinatorLayout: CoordinatorLayout, child: BottomNavigation) {
-        if (animator == null) {
-            animator = ViewCompat.animate(child)
-            animator!!.duration = animationDuration.toLong()
-            animator!!.interpolator = INTERPOLATOR
-        } else {
-            animator!!.cancel()
+    private fun ensureAnimator(child: BottomNavigation): SpringAnimation {
+        var spring = animator
+        if (null == spring) {
+            // critically damped spring settling (within 1%) in about animationDuration ms
+            val omega = SETTLE_FACTOR * 1000f / Math.max(1, animationDuration)
+            spring = SpringAnimation(child, DynamicAnimation.TRANSLATION_Y)
+            spring.spring = SpringForce()
+                    .setDampingRatio(SpringForce.DAMPING_RATIO_NO_BOUNCY)
+                    .setStiffness(omega * omega)
+            animator = spring
         }
+        return spring
     }
 
     abstract class DependentView<V : View> internal constructor(protected val child: V, protected var height: Int,
@@ -295,11 +401,32 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
         internal abstract fun onDependentViewChanged(parent: CoordinatorLayout, navigation: BottomNavigation): Boolean
     }
 
+    /**
+     * @param translate when true the snackbar is moved with [ViewCompat.offsetTopAndBottom] instead of
+     * changing its bottom margin, so no layout pass is required while the navigation moves.
+     * The translationY property is left to the snackbar's own show/hide animations.
+     */
     class SnackBarDependentView internal constructor(child: SnackbarLayout, height: Int,
-                                                     bottomInset: Int) : DependentView<SnackbarLayout>(child, height, bottomInset) {
+                                                     bottomInset: Int, private val translate: Boolean = false) :
+            DependentView<SnackbarLayout>(child, height, bottomInset) {
         @Suppress("SpellCheckingInspection")
         private var snackbarHeight = -1
 
+        /**
+         * Offset currently applied to the snackbar, and the one it should have
+         */
+        private var appliedOffset = 0
+        private var targetOffset = 0
+        private var listening = false
+
+        /**
+         * A layout pass resets the snackbar position, the offset has to be applied again
+         */
+        private val layoutChangeListener = View.OnLayoutChangeListener { _, _, _, _, _, _, _, _, _ ->
+            appliedOffset = 0
+            applyOffset()
+        }
+
         override fun onDependentViewChanged(parent: CoordinatorLayout, navigation: BottomNavigation): Boolean {
             Timber.v("onDependentViewChanged")
 
@@ -318,8 +445,11 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
                 snackbarHeight = child.height
             }
 
-            val maxScroll = Math.max(0f, navigation.translationY - bottomInset)
-            val newBottomMargin = (height + bottomInset - maxScroll).toInt()
+            if (translate) {
+                return onNavigationMoved(navigation)
+            }
+
+            val newBottomMargin = getBottomMargin(navigation)
 
             if (layoutParams.bottomMargin != newBottomMargin) {
                 layoutParams.bottomMargin = newBottomMargin
@@ -329,7 +459,39 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
             return false
         }
 
+        private fun getBottomMargin(navigation: BottomNavigation): Int {
+            val maxScroll = Math.max(0f, navigation.translationY - bottomInset)
+            return (height + bottomInset - maxScroll).toInt()
+        }
+
+        internal fun onNavigationMoved(navigation: BottomNavigation): Boolean {
+            if (!listening) {
+                child.addOnLayoutChangeListener(layoutChangeListener)
+                listening = true
+            }
+            targetOffset = bottomMargin - getBottomMargin(navigation)
+            return applyOffset()
+        }
+
+        private fun applyOffset(): Boolean {
+            val delta = targetOffset - appliedOffset
+            if (delta != 0) {
+                ViewCompat.offsetTopAndBottom(child, delta)
+                appliedOffset = targetOffset
+                return true
+            }
+            return false
+        }
+
         public override fun onDestroy() {
+            if (listening) {
+                child.removeOnLayoutChangeListener(layoutChangeListener)
+                listening = false
+            }
+            if (appliedOffset != 0) {
+                ViewCompat.offsetTopAndBottom(child, -appliedOffset)
+                appliedOffset = 0
+            }
             super.onDestroy()
         }
     }
@@ -340,8 +502,8 @@ open class BottomBehavior constructor(context: Context, attrs: AttributeSet) :
 
     companion object {
         /**
-         * default hide/show interpolator
+         * natural frequency * settle time of a critically damped spring, for a 1% tolerance
          */
-        private val INTERPOLATOR = LinearOutSlowInInterpolator()
+        private const val SETTLE_FACTOR = 6.6f
     }
 }
\ No newline at end of file
@@ -22,26 +22,22 @@
 
 package it.sephiroth.android.library.bottomnavigation
 
-import android.animation.Animator
-import android.annotation.SuppressLint
 import android.annotation.TargetApi
 import android.content.Context
-import android.graphics.Color
+import android.graphics.Canvas
 import android.graphics.Rect
 import android.graphics.Typeface
 import android.graphics.drawable.ColorDrawable
-import android.graphics.drawable.LayerDrawable
 import android.os.Build
-import android.os.Bundle
 import android.os.Parcel
 import android.os.Parcelable
 import android.text.TextUtils
 import android.util.AttributeSet
 import android.util.Log.INFO
 import android.util.Log.VERBOSE
+import android.util.Log.WARN
 import android.view.Gravity
 import android.view.View
-import android.view.ViewAnimationUtils
 import android.view.ViewGroup
 import android.view.ViewGroup.LayoutParams.MATCH_PARENT
 import android.widget.FrameLayout
@@ -58,6 +54,7 @@ import it.sephiroth.android.library.bottonnavigation.R
 import java.lang.ref.SoftReference
 import java.lang.reflect.Constructor
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.math.min
 
 /**
@@ -77,7 +74,8 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
      * This is the amount of space we have to cover in case there's a translucent navigation
      * enabled.
      */
-    private var bottomInset: Int = 0
+    internal var bottomInset: Int = 0
+        private set
 
     /**
      * This is the amount of space we have to cover in case there's a translucent status
@@ -112,14 +110,9 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
     private var itemsContainer: ItemsLayoutContainer? = null
 
     /**
-     * This is where the color animation is happening
-     */
-    private var backgroundOverlay: View? = null
-
-    /**
-     * View used to show the press ripple overlay.
+     * Press ripple feedback, created on the first press when [enabledRippleBackground] is true
      */
-    private lateinit var rippleOverlay: View
+    private var pressRipple: PressRipple? = null
 
     /**
      * Toggle the ripple background animation on item press
@@ -133,6 +126,11 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
 
     private var pendingMenu: MenuParser.Menu? = null
 
+    /**
+     * Disabled items restored from the saved state, applied by [setItems]
+     */
+    private var pendingDisabledMask: Int = 0
+
     /**
      * Default selected index.
      * After the items are populated changing this
@@ -141,9 +139,9 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
     private var defaultSelectedIndex = 0
 
     /**
-     * View visible background color
+     * View background, also plays the color reveal animation
      */
-    private var backgroundDrawable: ColorDrawable? = null
+    private var backgroundDrawable: BackgroundDrawable? = null
 
     /**
      * Animation duration for the background color change
@@ -180,11 +178,6 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
      */
     private var rippleRevealAnimationDuration = resources.getInteger(android.R.integer.config_shortAnimTime).toLong()
 
-    /**
-     * item press reveal animation
-     */
-    private var circleRevealAnim: Animator? = null
-
     /**
      * View is attached
      */
@@ -223,7 +216,57 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
             return mBehavior
         }
 
-    private val mLayoutChangedListener = MyLayoutChangedListener()
+    /**
+     * Reusable bounds of the selected or pressed item, used for the background color reveal
+     * and the press ripple
+     */
+    private val itemBounds = Rect()
+
+    /**
+     * When true fixed menus are drawn by a single view ([FlatLayout]) instead of one view per item.
+     * Shifting and tablet menus are not affected. Must be set before the menu is populated.
+     */
+    var flatLayout: Boolean = false
+
+    /**
+     * When true item icons are rasterized once into a shared bitmap and drawn from there,
+     * instead of drawing (and tinting) the icon drawables on every frame.
+     * Must be set before the menu is populated.
+     */
+    var rasterizeIcons: Boolean = false
+
+    /**
+     * Pre-rasterized icons of the current menu, created when [rasterizeIcons] is enabled
+     */
+    private var iconAtlas: IconAtlas? = null
+
+    /**
+     * Menu and icon size of the atlas being built on the background executor
+     */
+    private var iconAtlasRequest: MenuParser.Menu? = null
+    private var iconAtlasRequestSize: Int = 0
+
+    /**
+     * Background menu parser used by [inflateMenuAsync]
+     */
+    private val asyncMenuInflater = AsyncMenuInflater()
+
+    /**
+     * Menu requested with [inflateMenuAsync] and not yet delivered,
+     * requested again if the view is re-attached after a detach
+     */
+    @MenuRes
+    private var pendingMenuResId: Int = 0
+
+    /**
+     * Animation clock shared by the items transitions
+     */
+    internal val transitionDriver = TransitionDriver()
+
+    /**
+     * Navigation position, dispatched once per frame to the views which follow it
+     */
+    val offset = NavigationOffset(this)
 
     @JvmOverloads
     constructor(context: Context, attrs: AttributeSet? = null) : super(context, attrs) {
@@ -245,37 +288,27 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         val parcelable = super.onSaveInstanceState()
 
         val savedState = SavedState(parcelable)
-
-        if (null == menu) {
-            savedState.selectedIndex = 0
-            savedState.disabledIndices = arrayListOf()
-        } else {
-            // savedState.selectedIndex = Math.max(0, Math.min(getSelectedIndex(), menu.getItemsCount() - 1));
-            savedState.selectedIndex = selectedIndex
-            savedState.disabledIndices = arrayListOf()
-            val items = menu?.items
-            if (items != null) {
-                for (i in items.indices) {
-                    if (!menu!!.items!![i].isEnabled) {
-                        savedState.disabledIndices.add(i)
-                    }
+        val currentMenu = menu ?: pendingMenu
+
+        savedState.selectedIndex = if (null == menu) 0 else selectedIndex
+        savedState.disabledMask = pendingDisabledMask
+        if (null != currentMenu) {
+            for (i in 0 until currentMenu.itemsCount) {
+                if (!currentMenu.getItemAt(i).isEnabled) {
+                    savedState.disabledMask = savedState.disabledMask or (1 shl i)
                 }
             }
         }
 
-        if (null != badgeProvider) {
-            savedState.badgeBundle = badgeProvider!!.save()
-        }
+        savedState.expanded = if (mBehavior is BottomBehavior) {
+            if (isExpanded) SavedState.EXPANDED else SavedState.COLLAPSED
+        } else SavedState.EXPANDED_UNKNOWN
 
-        if (null != pendingMenu) {
-            val items = pendingMenu?.items
-            if (items != null) {
-                for (i in items.indices) {
-                    if (savedState.disabledIndices.contains(i)) {
-                        pendingMenu!!.items!![i].isEnabled = false
-                    }
-                }
-            }
+        badgeProvider?.let {
+            // snapshots are immutable, the arrays can be written as they are
+            val badges = it.store.snapshot()
+            savedState.badgeIds = badges.ids
+            savedState.badgeCounts = badges.counts
         }
 
         return savedState
@@ -289,8 +322,25 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         defaultSelectedIndex = savedState.selectedIndex
         log(VERBOSE, "defaultSelectedIndex: $defaultSelectedIndex")
 
-        if (null != badgeProvider && null != savedState.badgeBundle) {
-            badgeProvider!!.restore(savedState.badgeBundle!!)
+        // the menu may not be available yet (async inflation), applied once set
+        pendingDisabledMask = savedState.disabledMask
+        menu?.let {
+            applyDisabledMask(it)
+            for (i in 0 until it.itemsCount) {
+                if (!it.getItemAt(i).isEnabled) {
+                    itemsContainer?.setItemEnabled(i, false)
+                }
+            }
+        }
+
+        if (savedState.expanded != SavedState.EXPANDED_UNKNOWN) {
+            setExpanded(savedState.expanded == SavedState.EXPANDED, false)
+        }
+
+        val ids = savedState.badgeIds
+        val counts = savedState.badgeCounts
+        if (null != badgeProvider && null != ids && null != counts) {
+            badgeProvider!!.store.set(ids, counts)
         }
     }
 
@@ -299,7 +349,15 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
 
         val array = context.obtainStyledAttributes(attrs, R.styleable.BottomNavigation, defStyleAttr, defStyleRes)
         val menuResId = array.getResourceId(R.styleable.BottomNavigation_bbn_entries, 0)
-        pendingMenu = MenuParser.inflateMenu(context, menuResId)
+        val inflateAsync = array.getBoolean(R.styleable.BottomNavigation_bbn_inflateAsync, false)
+        rasterizeIcons = array.getBoolean(R.styleable.BottomNavigation_bbn_rasterizeIcons, false)
+        flatLayout = array.getBoolean(R.styleable.BottomNavigation_bbn_flatLayout, false)
+        if (inflateAsync && menuResId != 0 && !isInEditMode) {
+            inflateMenuAsync(menuResId)
+        } else {
+            pendingMenu = MenuParser.inflateMenu(context, menuResId)
+            pendingMenu?.let { prefetchAsync(it) }
+        }
         badgeProvider = parseBadgeProvider(this, context, array.getString(R.styleable.BottomNavigation_bbn_badgeProvider))
         array.recycle()
 
@@ -325,26 +383,6 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
                 topInset = systembarTint.config.statusBarHeight
             }
         }
-
-        val params = LinearLayout.LayoutParams(MATCH_PARENT, MATCH_PARENT)
-        backgroundOverlay = View(getContext())
-        backgroundOverlay!!.layoutParams = params
-        addView(backgroundOverlay)
-
-        val drawable = ContextCompat.getDrawable(getContext(), R.drawable.bbn_ripple_selector)
-        drawable!!.mutate()
-        MiscUtils.setDrawableColor(drawable, Color.WHITE)
-
-        rippleOverlay = View(getContext())
-        with(rippleOverlay) {
-            layoutParams = FrameLayout.LayoutParams(MATCH_PARENT, MATCH_PARENT)
-            background = drawable
-            isClickable = false
-            isFocusable = false
-            isFocusableInTouchMode = false
-            alpha = 0f
-            addView(this)
-        }
     }
 
     internal fun resetPendingAction() {
@@ -357,7 +395,7 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
 
     fun setSelectedIndex(position: Int, animate: Boolean) {
         itemsContainer?.let {
-            setSelectedItemInternal(it, (itemsContainer as ViewGroup).getChildAt(position), position, animate, false)
+            setSelectedItemInternal(it, position, animate, false)
         } ?: run {
             defaultSelectedIndex = position
         }
@@ -377,12 +415,113 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
      */
     fun inflateMenu(@MenuRes menuResId: Int) {
         defaultSelectedIndex = 0
+        cancelAsyncInflation()
         pendingMenu = when {
             isAttachedToWindow -> {
                 setItems(MenuParser.inflateMenu(context, menuResId))
                 null
             }
-            else -> MenuParser.inflateMenu(context, menuResId)
+            else -> MenuParser.inflateMenu(context, menuResId)?.also { prefetchAsync(it) }
+        }
+    }
+
+    /**
+     * Set an already built menu into this navigation component,
+     * for instance one created by the generated menu factories.
+     *
+     * @param menu the new menu
+     */
+    fun setMenu(menu: MenuParser.Menu) {
+        defaultSelectedIndex = 0
+        cancelAsyncInflation()
+        pendingMenu = when {
+            isAttachedToWindow -> {
+                setItems(menu)
+                null
+            }
+            else -> menu.also { prefetchAsync(it) }
+        }
+    }
+
+    /**
+     * Update the current menu with the passed one. Items are matched by id: the existing item views
+     * are reordered and updated, only the added items get new views and only the removed ones are
+     * discarded. The selection follows the selected item id, if still present.
+     * The whole menu is replaced, as in [setMenu], only when the new menu needs a different
+     * items container (shifting, tablet or fixed).
+     *
+     * @param newMenu the new menu
+     */
+    fun updateMenu(newMenu: MenuParser.Menu) {
+        val current = menu
+        val container = itemsContainer
+
+        if (null == current || null == container || !isAttachedToWindow) {
+            setMenu(newMenu)
+            return
+        }
+
+        cancelAsyncInflation()
+        newMenu.setTabletMode(current.isTablet)
+
+        if (container.javaClass != containerClass(newMenu)) {
+            log(VERBOSE, "updateMenu: container changed, replacing the menu")
+            setMenu(newMenu)
+            return
+        }
+
+        if (newMenu.itemsCount < 3 || newMenu.itemsCount > 5) {
+            throw IllegalArgumentException("BottomNavigation expects 3 to 5 items. " + newMenu.itemsCount + " found")
+        }
+
+        this.menu = newMenu
+        enabledRippleBackground = !newMenu.getItemAt(0).hasColor() || newMenu.isTablet
+        badgeProvider?.onMenuChanged(newMenu)
+
+        if (current.hasSameAppearance(newMenu)) {
+            container.updateItems(newMenu)
+        } else {
+            // colors or timings changed: the views are bound to the old menu, build them again in place
+            val selected = container.getSelectedIndex()
+            val selectedId = if (selected in 0 until current.itemsCount) current.getItemAt(selected).id else View.NO_ID
+            container.removeAll()
+            container.setSelectedIndex(Math.max(0, newMenu.indexOfItem(selectedId)), false)
+            container.populate(newMenu)
+        }
+
+        val index = container.getSelectedIndex()
+        if (index > -1 && index < newMenu.itemsCount && newMenu.getItemAt(index).hasColor() && !newMenu.isTablet) {
+            backgroundDrawable!!.color = newMenu.getItemAt(index).color
+        } else {
+            initializeBackgroundColor(newMenu)
+        }
+
+        requestLayout()
+        menuChangedListener?.onMenuChanged(this)
+    }
+
+    /**
+     * Inflate a menu resource into this navigation component, parsing it on a background thread.
+     * The parsed menu is applied on the next frame. The request is cancelled if the view
+     * is detached from the window and issued again once it's re-attached.
+     *
+     * @param menuResId the menu resource id
+     */
+    fun inflateMenuAsync(@MenuRes menuResId: Int) {
+        defaultSelectedIndex = 0
+        startAsyncInflation(menuResId)
+    }
+
+    private fun startAsyncInflation(@MenuRes menuResId: Int) {
+        pendingMenuResId = menuResId
+        val tablet = if (isAttachedToWindow) isTablet(gravity) else null
+        asyncMenuInflater.inflate(context, menuResId, tablet, typeface.get()) { menu ->
+            pendingMenuResId = 0
+            if (isAttachedToWindow) {
+                setItems(menu)
+            } else {
+                pendingMenu = menu
+            }
         }
     }
 
@@ -455,28 +594,6 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         marginLayoutParams.bottomMargin = -bottomInset
     }
 
-    override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
-        super.onLayout(changed, left, top, right, bottom)
-
-        if (changed) {
-            val params = rippleOverlay.layoutParams
-            var size = min(width, height)
-
-            if (!isTablet(gravity)) {
-                if (bottomInset == 0) {
-                    size *= 2
-                }
-            } else {
-                size = (size * 1.5f).toInt()
-            }
-
-            params.width = size
-            params.height = size
-            rippleOverlay.layoutParams = params
-        }
-
-    }
-
     override fun isAttachedToWindow(): Boolean {
         return if (Build.VERSION.SDK_INT >= 19) {
             super.isAttachedToWindow()
@@ -486,6 +603,8 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
     override fun onAttachedToWindow() {
         super.onAttachedToWindow()
         attached = true
+        badgeProvider?.onAttached()
+        viewTreeObserver.addOnPreDrawListener(offset)
 
         val params = layoutParams
         val layoutParams: CoordinatorLayout.LayoutParams?
@@ -503,6 +622,9 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         if (null != pendingMenu) {
             setItems(pendingMenu)
             pendingMenu = null
+        } else if (0 != pendingMenuResId) {
+            // cancelled by a previous detach
+            startAsyncInflation(pendingMenuResId)
         }
 
         if (null == mBehavior) {
@@ -524,6 +646,79 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         }
     }
 
+    /**
+     * Decode the menu icons and measure its labels on the background executor,
+     * before the menu is populated
+     */
+    private fun prefetchAsync(menu: MenuParser.Menu) {
+        val context = context
+        val typeface = typeface.get()
+        MiscUtils.backgroundExecutor.execute {
+            IconCache.preload(context, menu)
+            LabelMetricsCache.precompute(context, menu, typeface)
+        }
+    }
+
+    /**
+     * Returns the shared icons atlas for the current menu, or null if [rasterizeIcons] is disabled.
+     * The atlas is built on the background executor: until it's ready null is returned and the
+     * item views use their own drawables, then they are asked to reload their icons.
+     */
+    internal fun getIconAtlas(iconSize: Int): IconAtlas? {
+        if (!rasterizeIcons) {
+            return null
+        }
+
+        val current = menu ?: return null
+        iconAtlas?.let {
+            if (it.menu === current && it.iconSize == iconSize) {
+                return it
+            }
+        }
+
+        if (iconAtlasRequest !== current || iconAtlasRequestSize != iconSize) {
+            iconAtlasRequest = current
+            iconAtlasRequestSize = iconSize
+
+            val context = context
+            MiscUtils.backgroundExecutor.execute {
+                val atlas = IconAtlas(context, current, iconSize)
+                post { onIconAtlasReady(atlas) }
+            }
+        }
+        return null
+    }
+
+    private fun onIconAtlasReady(atlas: IconAtlas) {
+        if (atlas.menu !== menu || atlas.menu !== iconAtlasRequest || atlas.iconSize != iconAtlasRequestSize) {
+            return
+        }
+
+        iconAtlas = atlas
+        iconAtlasRequest = null
+
+        val container = itemsContainer ?: return
+        for (i in 0 until container.childCount) {
+            (container.getChildAt(i) as? BottomNavigationItemViewAbstract)?.reloadIcon()
+        }
+    }
+
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        attached = false
+
+        // keep pendingMenuResId, the request is issued again in onAttachedToWindow
+        asyncMenuInflater.cancel()
+        transitionDriver.finishAll()
+        badgeProvider?.onDetached()
+        viewTreeObserver.removeOnPreDrawListener(offset)
+    }
+
+    private fun cancelAsyncInflation() {
+        asyncMenuInflater.cancel()
+        pendingMenuResId = 0
+    }
+
     private fun setItems(menu: MenuParser.Menu?) {
         this.menu = menu
 
@@ -532,11 +727,13 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
                 throw IllegalArgumentException("BottomNavigation expects 3 to 5 items. " + menu.itemsCount + " found")
             }
 
+            applyDisabledMask(menu)
             enabledRippleBackground = !menu.getItemAt(0).hasColor() || menu.isTablet
 
             menu.setTabletMode(isTablet(gravity))
 
             initializeBackgroundColor(menu)
+            badgeProvider?.onMenuChanged(menu)
             initializeContainer(menu)
             initializeItems(menu)
 
@@ -546,28 +743,39 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         requestLayout()
     }
 
-    private fun initializeUI(gravity: Int) {
-        val layerDrawable: LayerDrawable
+    private fun applyDisabledMask(menu: MenuParser.Menu) {
+        if (pendingDisabledMask != 0) {
+            for (i in 0 until menu.itemsCount) {
+                if (pendingDisabledMask and (1 shl i) != 0) {
+                    menu.getItemAt(i).isEnabled = false
+                }
+            }
+            pendingDisabledMask = 0
+        }
+    }
 
+    private fun initializeUI(gravity: Int) {
         val tablet = isTablet(gravity)
         val elevation = resources.getDimensionPixelSize(if (!tablet) R.dimen.bbn_elevation else R.dimen.bbn_elevation_tablet)
-        val bgResId = if (!tablet)
-            R.drawable.bbn_background
-        else
-            if (MiscUtils.isGravityRight(gravity))
-                R.drawable.bbn_background_tablet_right
-            else
-                R.drawable.bbn_background_tablet_left
         val paddingBottom = if (!tablet) shadowHeight else 0
 
         // View elevation
         ViewCompat.setElevation(this, elevation.toFloat())
 
-        // Main background
-        layerDrawable = ContextCompat.getDrawable(context, bgResId) as LayerDrawable
-        layerDrawable.mutate()
-        backgroundDrawable = layerDrawable.findDrawableByLayerId(R.id.bbn_background) as ColorDrawable
-        background = layerDrawable
+        // Main background: top shadow or tablet divider, plus the color
+        val drawable = if (!tablet) {
+            BackgroundDrawable(transitionDriver,
+                    ContextCompat.getDrawable(context, R.drawable.bbn_top_shadow), Gravity.TOP, shadowHeight)
+        } else {
+            BackgroundDrawable(transitionDriver,
+                    ColorDrawable(ContextCompat.getColor(context, android.R.color.darker_gray)),
+                    // the divider faces the content
+                    if (MiscUtils.isGravityRight(gravity)) Gravity.LEFT else Gravity.RIGHT,
+                    resources.getDimensionPixelSize(R.dimen.bbn_tablet_divider_width))
+        }
+        drawable.color = ContextCompat.getColor(context, android.R.color.background_light)
+        backgroundDrawable = drawable
+        background = drawable
 
         // Padding bottom
         setPadding(0, paddingBottom, 0, 0)
@@ -581,13 +789,10 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
     private fun initializeContainer(menu: MenuParser.Menu) {
         if (null != itemsContainer) {
 
-            // remove the layout menuItemSelectionListener
-            (itemsContainer as ViewGroup).removeOnLayoutChangeListener(mLayoutChangedListener)
-
             if (menu.isTablet && itemsContainer !is TabletLayout) {
                 removeView(itemsContainer as View?)
                 itemsContainer = null
-            } else if (menu.isShifting && itemsContainer !is ShiftingLayout || !menu.isShifting && itemsContainer !is FixedLayout) {
+            } else if (itemsContainer!!.javaClass != containerClass(menu)) {
                 removeView(itemsContainer as View?)
                 itemsContainer = null
             } else {
@@ -600,9 +805,10 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
                     if (menu.isTablet) navigationWidth else MATCH_PARENT,
                     if (menu.isTablet) MATCH_PARENT else navigationHeight)
 
-            itemsContainer = when {
-                menu.isTablet -> TabletLayout(context)
-                menu.isShifting -> ShiftingLayout(context)
+            itemsContainer = when (containerClass(menu)) {
+                TabletLayout::class.java -> TabletLayout(context)
+                ShiftingLayout::class.java -> ShiftingLayout(context)
+                FlatLayout::class.java -> FlatLayout(context)
                 else -> FixedLayout(context)
             }
 
@@ -611,9 +817,15 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
             itemsContainer!!.layoutParams = params
             addView(itemsContainer as View?)
         }
+    }
 
-        // add the layout menuItemSelectionListener
-        (itemsContainer as ViewGroup).addOnLayoutChangeListener(mLayoutChangedListener)
+    private fun containerClass(menu: MenuParser.Menu): Class<out ItemsLayoutContainer> {
+        return when {
+            menu.isTablet -> TabletLayout::class.java
+            menu.isShifting -> ShiftingLayout::class.java
+            flatLayout -> FlatLayout::class.java
+            else -> FixedLayout::class.java
+        }
     }
 
     private fun initializeItems(menu: MenuParser.Menu) {
@@ -626,8 +838,6 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         if (defaultSelectedIndex > -1 && menu.getItemAt(defaultSelectedIndex).hasColor()) {
             backgroundDrawable!!.color = menu.getItemAt(defaultSelectedIndex).color
         }
-
-        MiscUtils.setDrawableColor(rippleOverlay.background, menu.getRippleColor())
     }
 
     /**
@@ -648,39 +858,6 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         return -1
     }
 
-    internal inner class MyLayoutChangedListener : View.OnLayoutChangeListener {
-        var view: BottomNavigationItemViewAbstract? = null
-        private val outRect = Rect()
-
-        override fun onLayoutChange(
-                unused: View?,
-                left: Int,
-                top: Int,
-                right: Int,
-                bottom: Int,
-                oldLeft: Int,
-                oldTop: Int,
-                oldRight: Int,
-                oldBottom: Int) {
-            if (null == view) {
-                return
-            }
-
-            view?.let {
-                it.getHitRect(outRect)
-                val centerX = rippleOverlay.width / 2
-                val centerY = rippleOverlay.height / 2
-                rippleOverlay.translationX = (outRect.centerX() - centerX).toFloat()
-                rippleOverlay.translationY = (outRect.centerY() - centerY).toFloat()
-            }
-        }
-
-        fun forceLayout(v: View) {
-            view = v as BottomNavigationItemViewAbstract
-            onLayoutChange(view, view!!.left, view!!.top, view!!.right, view!!.bottom, 0, 0, 0, 0)
-        }
-    }
-
     override fun onItemDown(parent: ItemsLayoutContainer, view: View,
                             pressed: Boolean, x: Float, y: Float) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
@@ -688,57 +865,69 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         }
 
         if (!pressed) {
-            if (enabledRippleBackground) {
-
-                circleRevealAnim?.let {
-                    if (it.isRunning) {
-                        it.addListener(object : Animator.AnimatorListener {
-                            override fun onAnimationRepeat(p0: Animator?) {}
-                            override fun onAnimationStart(p0: Animator?) {}
-                            override fun onAnimationCancel(p0: Animator?) {}
-
-                            override fun onAnimationEnd(p0: Animator?) {
-                                rippleOverlay.animate().alpha(0f).setDuration(rippleRevealAnimationDuration).start()
-                            }
-                        })
-                    } else {
-                        rippleOverlay.animate().alpha(0f).setDuration(rippleRevealAnimationDuration).start()
-                    }
-                }
+            pressRipple?.release()
+            return
+        }
 
-                rippleOverlay.isPressed = false
+        if (enabledRippleBackground) {
+            val index = parent.getItemIndex(view)
+            if (index < 0) {
+                return
             }
-            rippleOverlay.isHovered = false
-            return
-        } else {
-            mLayoutChangedListener.forceLayout(view)
-            rippleOverlay.isHovered = true
 
-            if (enabledRippleBackground) {
-                rippleOverlay.alpha = 1f
-                rippleOverlay.isPressed = true
+            var size = min(width, height)
+            if (!isTablet(gravity)) {
+                if (bottomInset == 0) {
+                    size *= 2
+                }
+            } else {
+                size = (size * 1.5f).toInt()
+            }
 
-                circleRevealAnim?.removeAllListeners()
-                circleRevealAnim?.cancel()
-                circleRevealAnim =
-                        ViewAnimationUtils.createCircularReveal(rippleOverlay, rippleOverlay.width / 2, rippleOverlay.height / 2, 0f, (rippleOverlay.width / 2).toFloat())
-                circleRevealAnim?.duration = rippleRevealAnimationDuration
-                circleRevealAnim?.start()
+            loadItemBounds(parent, index)
+            val ripple = pressRipple ?: PressRipple(transitionDriver, this).also { pressRipple = it }
+            ripple.press(itemBounds.exactCenterX(), itemBounds.exactCenterY(), size / 2f,
+                    menu!!.getRippleColor(), rippleRevealAnimationDuration)
+        }
+    }
 
+    /**
+     * Store in [itemBounds] the bounds of the item at the given index, in this view coordinates
+     */
+    private fun loadItemBounds(parent: ItemsLayoutContainer, index: Int) {
+        val container = parent as View
+        parent.getItemBounds(index, itemBounds)
+        itemBounds.offset(container.left, container.top)
+    }
 
+    override fun dispatchDraw(canvas: Canvas) {
+        pressRipple?.let {
+            if (it.isVisible) {
+                val saveCount = canvas.save()
+                canvas.clipRect(paddingLeft, paddingTop, width - paddingRight, height - paddingBottom)
+                it.draw(canvas)
+                canvas.restoreToCount(saveCount)
             }
         }
+        super.dispatchDraw(canvas)
     }
 
     override fun onItemClick(parent: ItemsLayoutContainer, view: View, index: Int, animate: Boolean) {
         log(VERBOSE, "onItemClick: $index")
-        setSelectedItemInternal(parent, view, index, animate, true)
-        mLayoutChangedListener.forceLayout(view)
+        setSelectedItemInternal(parent, index, animate, true)
+
+        // the pressed item may have moved, e.g. in shifting mode
+        pressRipple?.let {
+            if (it.isVisible) {
+                loadItemBounds(parent, index)
+                it.moveTo(itemBounds.exactCenterX(), itemBounds.exactCenterY())
+            }
+        }
     }
 
     private fun setSelectedItemInternal(
             layoutContainer: ItemsLayoutContainer,
-            view: View, index: Int,
+            index: Int,
             animate: Boolean,
             fromUser: Boolean) {
 
@@ -752,20 +941,14 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
 
             if (null != item && item.hasColor() && !menu!!.isTablet) {
                 if (animate) {
-                    MiscUtils.animate(
-                            this,
-                            view,
-                            backgroundOverlay!!,
-                            backgroundDrawable!!,
+                    layoutContainer.getItemBounds(index, itemBounds)
+                    backgroundDrawable!!.reveal(
                             item.color,
+                            itemBounds.exactCenterX(),
+                            paddingTop + itemBounds.height() / 2f,
                             backgroundColorAnimation)
                 } else {
-                    MiscUtils.switchColor(
-                            this,
-                            view,
-                            backgroundOverlay!!,
-                            backgroundDrawable!!,
-                            item.color)
+                    backgroundDrawable!!.color = item.color
                 }
             }
 
@@ -786,10 +969,7 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
 
     fun invalidateBadge(itemId: Int) {
         log(VERBOSE, "invalidateBadge: $itemId")
-        if (null != itemsContainer) {
-            val viewAbstract = itemsContainer!!.findViewById<View>(itemId) as BottomNavigationItemViewAbstract?
-            viewAbstract?.invalidateBadge()
-        }
+        itemsContainer?.invalidateBadge(itemId)
     }
 
     interface OnMenuItemSelectionListener {
@@ -802,25 +982,41 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
         fun onMenuChanged(parent: BottomNavigation)
     }
 
+    interface BadgeProviderFactory {
+        fun create(navigation: BottomNavigation): BadgeProvider
+    }
+
     internal class SavedState : View.BaseSavedState {
         var selectedIndex: Int = 0
-        var badgeBundle: Bundle? = null
-        var disabledIndices = arrayListOf<Int>()
 
-        @SuppressLint("ParcelClassLoader")
+        /**
+         * Bit n set if the item at position n is disabled
+         */
+        var disabledMask: Int = 0
+        var expanded: Int = EXPANDED_UNKNOWN
+        var badgeIds: IntArray? = null
+        var badgeCounts: IntArray? = null
+
         constructor(`in`: Parcel) : super(`in`) {
-            selectedIndex = `in`.readInt()
-            badgeBundle = `in`.readBundle()
-            `in`.readList(disabledIndices, SavedState::class.java.classLoader)
+            if (`in`.readInt() == VERSION) {
+                selectedIndex = `in`.readInt()
+                disabledMask = `in`.readInt()
+                expanded = `in`.readInt()
+                badgeIds = `in`.createIntArray()
+                badgeCounts = `in`.createIntArray()
+            }
         }
 
         constructor(superState: Parcelable) : super(superState)
 
         override fun writeToParcel(out: Parcel, flags: Int) {
             super.writeToParcel(out, flags)
+            out.writeInt(VERSION)
             out.writeInt(selectedIndex)
-            out.writeBundle(badgeBundle)
-            out.writeList(disabledIndices)
+            out.writeInt(disabledMask)
+            out.writeInt(expanded)
+            out.writeIntArray(badgeIds)
+            out.writeIntArray(badgeCounts)
         }
 
         companion object {
@@ -834,6 +1030,15 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
                     return arrayOfNulls(size)
                 }
             }
+
+            /**
+             * Bump when the parcel layout changes
+             */
+            private const val VERSION = 2
+
+            const val EXPANDED_UNKNOWN = -1
+            const val COLLAPSED = 0
+            const val EXPANDED = 1
         }
     }
 
@@ -856,6 +1061,29 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
 
         private val S_CONSTRUCTORS = ThreadLocal<MutableMap<String, Constructor<BadgeProvider>>>()
 
+        /**
+         * Registered badge provider factories, keyed by fully qualified class name
+         */
+        private val BADGE_PROVIDER_FACTORIES = ConcurrentHashMap<String, BadgeProviderFactory>()
+
+        init {
+            registerBadgeProvider(BadgeProvider::class.java, object : BadgeProviderFactory {
+                override fun create(navigation: BottomNavigation) = BadgeProvider(navigation)
+            })
+        }
+
+        /**
+         * Register the factory used to create the badge provider declared with the `bbn_badgeProvider`
+         * attribute, instead of instantiating the class through reflection.
+         * Should be called before the views are inflated, for instance in `Application.onCreate`.
+         *
+         * @param providerClass the badge provider class, as declared in the xml attribute
+         */
+        @JvmStatic
+        fun registerBadgeProvider(providerClass: Class<out BadgeProvider>, factory: BadgeProviderFactory) {
+            BADGE_PROVIDER_FACTORIES[providerClass.name] = factory
+        }
+
         internal fun parseBadgeProvider(navigation: BottomNavigation, context: Context, name: String?): BadgeProvider {
             log(VERBOSE, "parseBadgeProvider: $name")
 
@@ -873,6 +1101,13 @@ class BottomNavigation : FrameLayout, OnItemClickListener {
                         name
             }
 
+            BADGE_PROVIDER_FACTORIES[fullName]?.let {
+                return it.create(navigation)
+            }
+
+            // not registered, fallback to reflection
+            log(WARN, "BadgeProvider $fullName not registered, using reflection")
+
             try {
                 var constructors: MutableMap<String, Constructor<BadgeProvider>>? = S_CONSTRUCTORS.get()
                 if (constructors == null) {
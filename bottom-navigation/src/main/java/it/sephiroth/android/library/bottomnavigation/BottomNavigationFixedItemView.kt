@@ -4,7 +4,6 @@ import android.annotation.SuppressLint
 import android.graphics.Canvas
 import android.graphics.Color
 import android.graphics.Paint
-import android.graphics.PorterDuff
 import android.view.animation.DecelerateInterpolator
 import androidx.core.view.ViewCompat
 import it.sephiroth.android.library.bottonnavigation.R
@@ -27,6 +26,7 @@ internal class BottomNavigationFixedItemView(parent: BottomNavigation, expanded:
 
     private val interpolator = DecelerateInterpolator()
     private var textWidth: Float = 0.toFloat()
+    private var label: String = ""
     private val animationDuration: Long
     private val colorActive: Int
     private val colorInactive: Int
@@ -106,10 +106,9 @@ internal class BottomNavigationFixedItemView(parent: BottomNavigation, expanded:
         val enabled = isEnabled
         val dstColor = if (enabled) if (expanded) colorActive else colorInactive else colorDisabled
         val srcColor = if (enabled) if (expanded) colorInactive else colorActive else colorDisabled
-        val color = evaluator.evaluate(fraction, srcColor, dstColor) as Int
+        val color = ItemColorTransition.blend(srcColor, dstColor, ItemColorTransition.quantize(fraction))
 
-        icon?.setColorFilter(color, PorterDuff.Mode.SRC_ATOP)
-        icon?.alpha = Color.alpha(color)
+        applyIconColor(color)
         textPaint.color = color
         ViewCompat.postInvalidateOnAnimation(this)
     }
@@ -117,18 +116,18 @@ internal class BottomNavigationFixedItemView(parent: BottomNavigation, expanded:
     override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
         super.onLayout(changed, left, top, right, bottom)
 
-        if (null == this.icon) {
-            this.icon = item!!.getIcon(context)!!.mutate()
+        val iconChanged = null == this.icon
+        if (iconChanged) {
+            loadIcon(iconSize)!!
 
             val color =
                     if (isExpanded) if (isEnabled) colorActive else colorDisabled else if (isEnabled) colorInactive else colorDisabled
 
-            this.icon!!.setColorFilter(color, PorterDuff.Mode.SRC_ATOP)
+            applyIconColor(color)
             this.icon!!.setBounds(0, 0, iconSize, iconSize)
-            this.icon!!.alpha = Color.alpha(color)
         }
 
-        if (changed) {
+        if (changed || iconChanged) {
             val w = right - left
             centerX = (w - iconSize) / 2
             icon?.setBounds(centerX, centerY, centerX + iconSize, centerY + iconSize)
@@ -144,7 +143,8 @@ internal class BottomNavigationFixedItemView(parent: BottomNavigation, expanded:
         val width = width
         val height = height
 
-        textWidth = textPaint.measureText(item!!.title)
+        label = LabelMetricsCache.fit(textPaint, item!!.title, width - paddingHorizontal * 2)
+        textWidth = LabelMetricsCache.measure(textPaint, label)
         textX = paddingHorizontal + (width - paddingHorizontal * 2 - textWidth) / 2
         textY = (height - paddingBottomItem).toFloat()
         textCenterX = width / 2
@@ -156,7 +156,7 @@ internal class BottomNavigationFixedItemView(parent: BottomNavigation, expanded:
 
         canvas.save()
         canvas.translate(0f, iconTranslation)
-        icon?.draw(canvas)
+        drawIcon(canvas)
         drawBadge(canvas)
         canvas.restore()
 
@@ -164,7 +164,7 @@ internal class BottomNavigationFixedItemView(parent: BottomNavigation, expanded:
         canvas.scale(canvasTextScale, canvasTextScale, textCenterX.toFloat(), textCenterY.toFloat())
 
         canvas.drawText(
-                item!!.title,
+                label,
                 textX,
                 textY,
                 textPaint)
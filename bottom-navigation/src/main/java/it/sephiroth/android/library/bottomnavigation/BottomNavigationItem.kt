@@ -2,19 +2,21 @@ package it.sephiroth.android.library.bottomnavigation
 
 import android.content.Context
 import android.graphics.drawable.Drawable
-import androidx.appcompat.content.res.AppCompatResources
 
 /**
  * Created by alessandro on 4/3/16.
  *
  * The MIT License
  */
-class BottomNavigationItem(val id: Int, private val iconResource: Int, val title: String) {
+class BottomNavigationItem(val id: Int, internal val iconResource: Int, val title: String) {
     var color: Int = 0
     var isEnabled: Boolean = true
 
+    /**
+     * Returns a new mutable copy of the item icon, created through the shared [IconCache]
+     */
     fun getIcon(context: Context): Drawable? {
-        return AppCompatResources.getDrawable(context, this.iconResource)
+        return IconCache.getDrawable(context, this.iconResource)
     }
 
     fun hasColor(): Boolean {
@@ -1,10 +1,11 @@
 package it.sephiroth.android.library.bottomnavigation
 
-import android.animation.ArgbEvaluator
 import android.graphics.Canvas
+import android.graphics.Color
 import android.graphics.Paint
 import android.graphics.Typeface
 import android.graphics.drawable.Drawable
+import android.text.TextPaint
 import android.view.View
 import java.lang.ref.SoftReference
 
@@ -19,17 +20,27 @@ internal abstract class BottomNavigationItemViewAbstract(parent: BottomNavigatio
     // this.setBackground(drawable);
     var item: BottomNavigationItem? = null
         set(value) {
+            val previous = field
             field = value
             value?.let {
                 this.id = it.id
                 this.isEnabled = it.isEnabled
+
+                if (null != previous) {
+                    if (previous.iconResource != it.iconResource) {
+                        icon = null
+                        requestLayout()
+                    }
+                    if (previous.title != it.title) {
+                        textDirty = true
+                        requestLayout()
+                    }
+                }
             }
             invalidateBadge()
         }
 
-    protected val evaluator: ArgbEvaluator = ArgbEvaluator()
-
-    protected val textPaint: Paint = Paint(Paint.ANTI_ALIAS_FLAG)
+    protected val textPaint: TextPaint = TextPaint(Paint.ANTI_ALIAS_FLAG)
 
     private val rippleColor: Int = menu.getRippleColor()
 
@@ -41,15 +52,71 @@ internal abstract class BottomNavigationItemViewAbstract(parent: BottomNavigatio
     protected var badge: Drawable? = null
     protected var icon: Drawable? = null
 
+    /**
+     * When not null [icon] is a region of the pre-rasterized atlas, tinted with [iconPaint]
+     */
+    private var iconAtlas: IconAtlas? = null
+    private val iconPaint = Paint(Paint.FILTER_BITMAP_FLAG)
+    private val navigation: BottomNavigation = parent
+
+    protected val transitionDriver: TransitionDriver
+        get() = navigation.transitionDriver
+
     init {
         this.isExpanded = expanded
         this.provider = parent.badgeProvider
     }
 
+    /**
+     * Loads the item icon and, if enabled, the shared icons atlas
+     */
+    protected fun loadIcon(iconSize: Int): Drawable? {
+        val atlas = navigation.getIconAtlas(iconSize)
+        iconAtlas = atlas
+        icon = atlas?.newIcon(id, iconPaint) ?: item?.getIcon(context)
+        return icon
+    }
+
+    /**
+     * Drop the current icon, loaded again at the next layout
+     */
+    internal fun reloadIcon() {
+        icon = null
+        requestLayout()
+    }
+
+    /**
+     * Tint the icon with the passed color and alpha
+     */
+    protected fun applyIconColor(color: Int, alpha: Int) {
+        if (null != iconAtlas) {
+            iconPaint.color = color
+            iconPaint.alpha = alpha
+        } else {
+            icon?.colorFilter = IconColorFilters.get(color)
+            icon?.alpha = alpha
+        }
+    }
+
+    protected fun applyIconColor(color: Int) {
+        applyIconColor(color, Color.alpha(color))
+    }
+
+    protected fun drawIcon(canvas: Canvas) {
+        icon?.draw(canvas)
+    }
+
     fun invalidateBadge() {
         val d = provider?.getBadge(id)
 
         if (badge !== d) {
+            val current = badge
+            if (null == d && current is BadgeDrawable && current.isShown && null != parent) {
+                // keep drawing the badge until its exit animation completes
+                current.hide()
+                return
+            }
+
             if (null != badge) {
                 badge!!.callback = null
                 badge = null
@@ -99,15 +166,13 @@ internal abstract class BottomNavigationItemViewAbstract(parent: BottomNavigatio
 
     fun setTypeface(typeface: SoftReference<Typeface>?) {
         if (null != typeface) {
-            val tf = typeface.get()
-            if (null != tf) {
+            val tf = typeface.get() ?: Typeface.DEFAULT
+
+            if (textPaint.typeface != tf) {
                 textPaint.typeface = tf
-            } else {
-                textPaint.typeface = Typeface.DEFAULT
+                textDirty = true
+                requestLayout()
             }
-
-            textDirty = true
-            requestLayout()
         }
     }
 
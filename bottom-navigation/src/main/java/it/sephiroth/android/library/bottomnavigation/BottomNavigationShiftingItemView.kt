@@ -1,14 +1,11 @@
 package it.sephiroth.android.library.bottomnavigation
 
-import android.animation.AnimatorSet
-import android.animation.ObjectAnimator
-import android.animation.ValueAnimator
 import android.annotation.SuppressLint
 import android.graphics.Canvas
 import android.graphics.Color
 import android.graphics.Paint
-import android.graphics.PorterDuff
 import android.view.animation.DecelerateInterpolator
+import androidx.core.view.ViewCompat
 import it.sephiroth.android.library.bottonnavigation.R
 import timber.log.Timber
 
@@ -33,11 +30,14 @@ internal class BottomNavigationShiftingItemView(parent: BottomNavigation, expand
     private val alphaInactive: Float
     private val alphaDisabled: Float
     private val interpolator = DecelerateInterpolator()
+    private val transition = ItemColorTransition()
+    private val statusTransition = StatusTransition()
     private var textWidth: Float = 0.toFloat()
     private val colorActive: Int = menu.getColorActive()
     private val colorInactive: Int = menu.getColorInactive()
     private val colorDisabled: Int = menu.getColorDisabled()
     private var textX: Float = 0.toFloat()
+    private var label: String = ""
     private var textY: Int = 0
 
     init {
@@ -70,87 +70,85 @@ internal class BottomNavigationShiftingItemView(parent: BottomNavigation, expand
                 ((if (isExpanded) if (enabled) alphaActive else alphaDisabled else 0f) * BottomNavigationItemViewAbstract.ALPHA_MAX).toInt()
 
         if (null != icon) {
-            updateLayoutOnAnimation(layoutParams.width, 1f, isExpanded)
+            updateLayoutOnAnimation(1f, isExpanded)
         }
 
         requestLayout()
     }
 
     override fun onStatusChanged(expanded: Boolean, size: Int, animate: Boolean) {
+        transitionDriver.cancel(statusTransition)
+
+        // the item width is changed by the parent layout, only icon position and colors are animated here
         if (!animate) {
-            updateLayoutOnAnimation(size, 1f, expanded)
+            updateLayoutOnAnimation(1f, expanded)
             setCenterY(if (expanded) paddingTopItem else paddingBottomInactive)
             return
         }
 
-        val set = AnimatorSet()
-        set.duration = animationDuration * 2
-        set.interpolator = interpolator
-        val animator1 = ValueAnimator.ofInt(layoutParams.width, size)
-        val animator2 = ObjectAnimator.ofInt(this, "centerY", if (expanded) paddingBottomInactive else paddingTopItem,
-                if (expanded) paddingTopItem else paddingBottomInactive
-                                            )
-
-        animator1.addUpdateListener { animation ->
-            val size = animation.animatedValue as Int
-            val fraction = animation.animatedFraction
-            updateLayoutOnAnimation(size, fraction, expanded)
-        }
+        statusTransition.expanded = expanded
+        statusTransition.startCenterY = if (expanded) paddingBottomInactive else paddingTopItem
+        statusTransition.endCenterY = if (expanded) paddingTopItem else paddingBottomInactive
+        transitionDriver.start(statusTransition, animationDuration * 2, interpolator)
+    }
 
-        set.playTogether(animator1, animator2)
-        set.start()
+    /**
+     * Icon position and colors, advanced by the navigation [TransitionDriver]
+     */
+    private inner class StatusTransition : TransitionDriver.Transition() {
+        var expanded: Boolean = false
+        var startCenterY: Int = 0
+        var endCenterY: Int = 0
+
+        override fun onUpdate(fraction: Float) {
+            moveIcon(startCenterY + ((endCenterY - startCenterY) * fraction).toInt())
+            updateLayoutOnAnimation(fraction, expanded)
+            transitionDriver.invalidate(this@BottomNavigationShiftingItemView)
+        }
     }
 
-    private fun updateLayoutOnAnimation(size: Int, fraction: Float, expanded: Boolean) {
-        layoutParams.width = size
-        val color: Int
+    private fun updateLayoutOnAnimation(fraction: Float, expanded: Boolean) {
         val enabled = isEnabled
 
-        val srcColor = if (enabled) if (expanded) colorInactive else colorActive else colorDisabled
-        val dstColor = if (enabled) if (expanded) colorActive else colorInactive else colorDisabled
-        val srcAlpha = if (enabled) alphaInactive else alphaDisabled
-        val dstAlpha = if (enabled) alphaActive else alphaDisabled
-        if (expanded) {
-            color = evaluator.evaluate(fraction, srcColor, dstColor) as Int
-            icon!!.alpha = ((srcAlpha + fraction * (dstAlpha - srcAlpha)) * BottomNavigationItemViewAbstract.ALPHA_MAX).toInt()
-            textPaint.alpha = (fraction * dstAlpha * BottomNavigationItemViewAbstract.ALPHA_MAX).toInt()
-        } else {
-            color = evaluator.evaluate(fraction, srcColor, dstColor) as Int
-            val alpha = 1.0f - fraction
-            icon!!.alpha = ((srcAlpha + alpha * (dstAlpha - srcAlpha)) * BottomNavigationItemViewAbstract.ALPHA_MAX).toInt()
-            textPaint.alpha = (alpha * dstAlpha * BottomNavigationItemViewAbstract.ALPHA_MAX).toInt()
-        }
+        transition.start(
+                if (enabled) if (expanded) colorInactive else colorActive else colorDisabled,
+                if (enabled) if (expanded) colorActive else colorInactive else colorDisabled,
+                if (enabled) alphaInactive else alphaDisabled,
+                if (enabled) alphaActive else alphaDisabled,
+                expanded)
+        transition.update(fraction)
 
-        icon!!.setColorFilter(color, PorterDuff.Mode.SRC_ATOP)
+        textPaint.alpha = transition.textAlpha
+        applyIconColor(transition.color, transition.iconAlpha)
     }
 
-    private fun measureText() {
-        this.textWidth = textPaint.measureText(item!!.title)
+    private fun measureText(width: Int) {
+        this.label = LabelMetricsCache.fit(textPaint, item!!.title, width)
+        this.textWidth = LabelMetricsCache.measure(textPaint, label)
     }
 
     override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
         super.onLayout(changed, left, top, right, bottom)
 
-        if (null == this.icon) {
-            this.icon = item!!.getIcon(context)!!.mutate()
+        val iconChanged = null == this.icon
+        if (iconChanged) {
+            loadIcon(iconSize)!!
             icon?.setBounds(0, 0, iconSize, iconSize)
-            icon?.setColorFilter(
-                    if (isExpanded) if (isEnabled) colorActive else colorDisabled else if (isEnabled) colorInactive else colorDisabled, PorterDuff.Mode.SRC_ATOP)
-
-            icon?.alpha = (if (isExpanded)
-                (if (isEnabled) alphaActive else alphaDisabled) * BottomNavigationItemViewAbstract.ALPHA_MAX
-            else
-                (if (isEnabled) alphaInactive else alphaDisabled) * BottomNavigationItemViewAbstract.ALPHA_MAX).toInt()
+            applyIconColor(
+                    if (isExpanded) if (isEnabled) colorActive else colorDisabled else if (isEnabled) colorInactive else colorDisabled,
+                    (if (isExpanded)
+                        (if (isEnabled) alphaActive else alphaDisabled) * BottomNavigationItemViewAbstract.ALPHA_MAX
+                    else
+                        (if (isEnabled) alphaInactive else alphaDisabled) * BottomNavigationItemViewAbstract.ALPHA_MAX).toInt())
         }
 
-        if (textDirty) {
-            measureText()
-            textDirty = false
-        }
+        val textChanged = textDirty
+        textDirty = false
 
-        if (changed) {
+        if (changed || iconChanged || textChanged) {
             val w = right - left
             val h = bottom - top
+            measureText(w)
             val centerX = (w - iconSize) / 2
             this.textY = h - paddingBottomActive
             this.textX = (w - textWidth) / 2
@@ -160,9 +158,9 @@ internal class BottomNavigationShiftingItemView(parent: BottomNavigation, expand
 
     override fun onDraw(canvas: Canvas) {
         super.onDraw(canvas)
-        icon?.draw(canvas)
+        drawIcon(canvas)
         canvas.drawText(
-                item!!.title,
+                label,
                 textX,
                 textY.toFloat(),
                 textPaint)
@@ -174,7 +172,20 @@ internal class BottomNavigationShiftingItemView(parent: BottomNavigation, expand
     }
 
     fun setCenterY(value: Int) {
+        if (moveIcon(value)) {
+            ViewCompat.postInvalidateOnAnimation(this)
+        }
+    }
+
+    private fun moveIcon(value: Int): Boolean {
+        if (centerY == value) {
+            return false
+        }
         centerY = value
-        requestLayout()
+        icon?.let {
+            val bounds = it.bounds
+            it.setBounds(bounds.left, value, bounds.right, value + iconSize)
+        }
+        return true
     }
 }
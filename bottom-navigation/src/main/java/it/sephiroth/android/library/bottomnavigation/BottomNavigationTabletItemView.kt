@@ -1,10 +1,7 @@
 package it.sephiroth.android.library.bottomnavigation
 
-import android.animation.ObjectAnimator
 import android.annotation.SuppressLint
 import android.graphics.Canvas
-import android.graphics.Color
-import android.graphics.PorterDuff
 import android.view.animation.DecelerateInterpolator
 import androidx.core.view.ViewCompat
 import it.sephiroth.android.library.bottonnavigation.R
@@ -23,6 +20,7 @@ internal class BottomNavigationTabletItemView(parent: BottomNavigation, expanded
     private val colorActive: Int
     private val colorInactive: Int
     private val colorDisabled: Int
+    private val statusTransition = StatusTransition()
 
     init {
         val res = resources
@@ -34,45 +32,47 @@ internal class BottomNavigationTabletItemView(parent: BottomNavigation, expanded
     }
 
     override fun onStatusChanged(expanded: Boolean, size: Int, animate: Boolean) {
+        transitionDriver.cancel(statusTransition)
+
         if (!animate) {
             updateLayoutOnAnimation(1f, expanded)
+            ViewCompat.postInvalidateOnAnimation(this)
             return
         }
 
-        val animator = ObjectAnimator.ofFloat(0f, 1f)
-        animator.addUpdateListener { animation -> updateLayoutOnAnimation(animation.animatedFraction, expanded) }
-        animator.duration = animationDuration
-        animator.interpolator = interpolator
-        animator.start()
+        statusTransition.expanded = expanded
+        transitionDriver.start(statusTransition, animationDuration, interpolator)
+    }
+
+    private inner class StatusTransition : TransitionDriver.Transition() {
+        var expanded: Boolean = false
+
+        override fun onUpdate(fraction: Float) {
+            updateLayoutOnAnimation(fraction, expanded)
+            transitionDriver.invalidate(this@BottomNavigationTabletItemView)
+        }
     }
 
     private fun updateLayoutOnAnimation(fraction: Float, expanded: Boolean) {
         val enabled = isEnabled
         val dstColor = if (enabled) if (expanded) colorActive else colorInactive else colorDisabled
         val srcColor = if (enabled) if (expanded) colorInactive else colorActive else colorDisabled
-        val color = evaluator.evaluate(fraction, srcColor, dstColor) as Int
-
-        icon?.setColorFilter(color, PorterDuff.Mode.SRC_ATOP)
-        icon?.alpha = Color.alpha(color)
+        val color = ItemColorTransition.blend(srcColor, dstColor, ItemColorTransition.quantize(fraction))
 
-        ViewCompat.postInvalidateOnAnimation(this)
+        applyIconColor(color)
     }
 
     override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
         super.onLayout(changed, left, top, right, bottom)
 
-        if (null == this.icon) {
-            this.icon = item?.getIcon(context)?.mutate()
-            this.icon?.setColorFilter(
-                    if (isExpanded) if (isEnabled) colorActive else colorDisabled else if (isEnabled) colorInactive else colorDisabled,
-                    PorterDuff.Mode.SRC_ATOP
-                                     )
-            this.icon?.alpha =
-                    Color.alpha(if (isExpanded) if (isEnabled) colorActive else colorDisabled else if (isEnabled) colorInactive else colorDisabled)
+        val iconChanged = null == this.icon
+        if (iconChanged) {
+            loadIcon(iconSize)
+            applyIconColor(if (isExpanded) if (isEnabled) colorActive else colorDisabled else if (isEnabled) colorInactive else colorDisabled)
             this.icon?.setBounds(0, 0, iconSize, iconSize)
         }
 
-        if (changed) {
+        if (changed || iconChanged) {
             val w = right - left
             val h = bottom - top
             val centerX = (w - iconSize) / 2
@@ -83,7 +83,7 @@ internal class BottomNavigationTabletItemView(parent: BottomNavigation, expanded
 
     override fun onDraw(canvas: Canvas) {
         super.onDraw(canvas)
-        icon?.draw(canvas)
+        drawIcon(canvas)
         drawBadge(canvas)
     }
 }
@@ -33,6 +33,7 @@ class FixedLayout(context: Context) : ItemsLayoutContainer(context) {
     }
 
     override fun removeAll() {
+        indexItems(null)
         removeAllViews()
     }
 
@@ -105,6 +106,7 @@ class FixedLayout(context: Context) : ItemsLayoutContainer(context) {
 
     override fun populate(menu: MenuParser.Menu) {
         log(Log.INFO, "populate: $menu")
+        indexItems(menu)
 
         if (hasFrame) {
             populateInternal(menu)
@@ -126,13 +128,16 @@ class FixedLayout(context: Context) : ItemsLayoutContainer(context) {
         }
 
         this.itemFinalWidth = proposedWidth
+        this.totalChildrenSize = 0
 
         for (i in 0 until menu.itemsCount) {
             val item = menu.getItemAt(i)
 
             val params = LinearLayout.LayoutParams(proposedWidth, height)
 
-            val view = BottomNavigationFixedItemView(parent, i == selectedIndex, menu)
+            val reused = reuseItemView(item.id)
+            val view = reused ?: BottomNavigationFixedItemView(parent, i == selectedIndex, menu)
+            view.setExpanded(i == selectedIndex, 0, false)
             view.item = item
             view.layoutParams = params
             view.isClickable = true
@@ -153,7 +158,7 @@ class FixedLayout(context: Context) : ItemsLayoutContainer(context) {
                 Toast.makeText(context, item.title, Toast.LENGTH_SHORT).show()
                 true
             }
-            addView(view)
+            addItemView(view, null != reused)
         }
     }
 }
@@ -0,0 +1,450 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.annotation.SuppressLint
+import android.content.Context
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Rect
+import android.graphics.Typeface
+import android.graphics.drawable.Drawable
+import android.os.Bundle
+import android.text.TextPaint
+import android.util.Log
+import android.util.Log.INFO
+import android.view.KeyEvent
+import android.view.MotionEvent
+import android.view.SoundEffectConstants
+import android.view.View
+import android.view.ViewConfiguration
+import android.view.accessibility.AccessibilityEvent
+import android.widget.Button
+import android.widget.Toast
+import androidx.core.view.ViewCompat
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat
+import androidx.customview.widget.ExploreByTouchHelper
+import it.sephiroth.android.library.bottomnavigation.MiscUtils.log
+import it.sephiroth.android.library.bottonnavigation.R
+
+/**
+ * Items container which draws all the items by itself, without any child view.
+ * Touches are hit-tested internally and every item is exposed to the accessibility
+ * services as a virtual view.
+ *
+ * Only fixed menus are supported: shifting and tablet menus always use their own layouts.
+ */
+class FlatLayout(context: Context) : ItemsLayoutContainer(context) {
+    private val maxActiveItemWidth: Int
+    private val minActiveItemWidth: Int
+    private val iconSize: Int
+    private val paddingTopItem: Int
+    private val paddingBottomItem: Int
+    private val paddingHorizontal: Int
+
+    private var hasFrame: Boolean = false
+    private var selectedIndex: Int = 0
+    private var itemFinalWidth: Int = 0
+    private var menu: MenuParser.Menu? = null
+    private var pendingMenu: MenuParser.Menu? = null
+    private var items: Array<FlatItem> = emptyArray()
+
+    private var colorActive: Int = 0
+    private var colorInactive: Int = 0
+    private var colorDisabled: Int = 0
+
+    private val textPaint = TextPaint(Paint.ANTI_ALIAS_FLAG)
+    private val accessibilityHelper = AccessibilityHelper()
+
+    private var touchIndex = -1
+    private var longPressed = false
+    private val longPressRunnable = Runnable {
+        if (touchIndex > -1) {
+            longPressed = true
+            Toast.makeText(context, items[touchIndex].item.title, Toast.LENGTH_SHORT).show()
+        }
+    }
+
+    private class FlatItem(var item: BottomNavigationItem) {
+        val bounds = Rect()
+        var icon: Drawable? = null
+        var badge: Drawable? = null
+        var label: String = ""
+        var textX: Float = 0f
+    }
+
+    init {
+        val res = resources
+        maxActiveItemWidth = res.getDimensionPixelSize(R.dimen.bbn_fixed_maxActiveItemWidth)
+        minActiveItemWidth = res.getDimensionPixelSize(R.dimen.bbn_fixed_minActiveItemWidth)
+        iconSize = res.getDimensionPixelSize(R.dimen.bbn_fixed_item_icon_size)
+        paddingTopItem = res.getDimensionPixelSize(R.dimen.bbn_fixed_item_padding_top_active)
+        paddingBottomItem = res.getDimensionPixelSize(R.dimen.bbn_fixed_item_padding_bottom)
+        paddingHorizontal = res.getDimensionPixelSize(R.dimen.bbn_fixed_item_padding_horizontal)
+
+        textPaint.hinting = Paint.HINTING_ON
+        textPaint.isLinearText = true
+        textPaint.isSubpixelText = true
+        textPaint.textSize = res.getDimensionPixelSize(R.dimen.bbn_fixed_text_size_inactive).toFloat()
+
+        isClickable = true
+        setWillNotDraw(false)
+        ViewCompat.setAccessibilityDelegate(this, accessibilityHelper)
+    }
+
+    override fun removeAll() {
+        indexItems(null)
+        clearItems()
+        menu = null
+        pendingMenu = null
+        selectedIndex = 0
+        invalidate()
+    }
+
+    private fun clearItems() {
+        for (flatItem in items) {
+            flatItem.badge?.callback = null
+        }
+        items = emptyArray()
+        accessibilityHelper.invalidateRoot()
+    }
+
+    override fun onSizeChanged(w: Int, h: Int, oldw: Int, oldh: Int) {
+        super.onSizeChanged(w, h, oldw, oldh)
+        hasFrame = true
+
+        if (null != pendingMenu) {
+            populateInternal(pendingMenu!!)
+            pendingMenu = null
+        }
+    }
+
+    override fun onLayout(changed: Boolean, l: Int, t: Int, r: Int, b: Int) {
+        if (!hasFrame || items.isEmpty()) {
+            return
+        }
+
+        val width = r - l
+        val height = b - t
+        var left = (width - itemFinalWidth * items.size) / 2
+
+        for (flatItem in items) {
+            flatItem.bounds.set(left, 0, left + itemFinalWidth, height)
+            measureItem(flatItem)
+            left += itemFinalWidth
+        }
+        accessibilityHelper.invalidateRoot()
+    }
+
+    private fun measureItem(flatItem: FlatItem) {
+        val bounds = flatItem.bounds
+        val centerX = bounds.left + (bounds.width() - iconSize) / 2
+        flatItem.icon?.setBounds(centerX, paddingTopItem, centerX + iconSize, paddingTopItem + iconSize)
+
+        flatItem.label = LabelMetricsCache.fit(textPaint, flatItem.item.title, bounds.width() - paddingHorizontal * 2)
+        val textWidth = LabelMetricsCache.measure(textPaint, flatItem.label)
+        flatItem.textX = bounds.left + paddingHorizontal + (bounds.width() - paddingHorizontal * 2 - textWidth) / 2
+    }
+
+    override fun setSelectedIndex(index: Int, animate: Boolean) {
+        log(INFO, "setSelectedIndex: $index")
+
+        if (selectedIndex == index) {
+            return
+        }
+
+        this.selectedIndex = index
+        invalidate()
+        accessibilityHelper.invalidateRoot()
+    }
+
+    override fun getSelectedIndex(): Int {
+        return selectedIndex
+    }
+
+    override fun setItemEnabled(index: Int, enabled: Boolean) {
+        log(INFO, "setItemEnabled(%d, %b)", index, enabled)
+        if (index < items.size) {
+            items[index].item.isEnabled = enabled
+            invalidate()
+            accessibilityHelper.invalidateVirtualView(index)
+        }
+    }
+
+    override fun populate(menu: MenuParser.Menu) {
+        log(Log.INFO, "populate: $menu")
+        indexItems(menu)
+
+        if (hasFrame) {
+            populateInternal(menu)
+        } else {
+            this.pendingMenu = menu
+        }
+    }
+
+    override fun updateItems(menu: MenuParser.Menu) {
+        if (!hasFrame || items.isEmpty()) {
+            populate(menu)
+            return
+        }
+
+        val selectedId = if (selectedIndex in items.indices) items[selectedIndex].item.id else View.NO_ID
+        val previous = items
+
+        indexItems(menu)
+        this.menu = menu
+        this.itemFinalWidth = computeItemWidth(menu)
+
+        // match the current items by id, only the new ones load their icon
+        items = Array(menu.itemsCount) { index ->
+            val item = menu.getItemAt(index)
+            val flatItem = previous.firstOrNull { it.item.id == item.id } ?: FlatItem(item)
+            if (null == flatItem.icon || flatItem.item.iconResource != item.iconResource) {
+                flatItem.icon = item.getIcon(context)
+            }
+            flatItem.item = item
+            flatItem
+        }
+
+        for (flatItem in previous) {
+            if (!items.contains(flatItem)) {
+                flatItem.badge?.callback = null
+            }
+        }
+
+        selectedIndex = Math.max(0, menu.indexOfItem(selectedId))
+
+        for (flatItem in items) {
+            invalidateBadge(flatItem.item.id)
+        }
+
+        requestLayout()
+        invalidate()
+        accessibilityHelper.invalidateRoot()
+    }
+
+    private fun computeItemWidth(menu: MenuParser.Menu): Int {
+        val screenWidth = (parent as View).width
+        val proposedWidth = Math.min(Math.max(screenWidth / menu.itemsCount, minActiveItemWidth), maxActiveItemWidth)
+        return if (proposedWidth * menu.itemsCount > screenWidth) screenWidth / menu.itemsCount else proposedWidth
+    }
+
+    override fun getItemBounds(index: Int, outRect: Rect) {
+        if (index > -1 && index < items.size) {
+            outRect.set(items[index].bounds)
+        } else {
+            outRect.setEmpty()
+        }
+    }
+
+    override fun getItemIndex(view: View): Int {
+        return if (view === this) touchIndex else -1
+    }
+
+    override fun invalidateBadge(itemId: Int) {
+        val navigation = parent as BottomNavigation? ?: return
+        val index = getItemIndexById(itemId)
+        if (index < 0 || index >= items.size) {
+            return
+        }
+
+        val flatItem = items[index]
+        val badge = navigation.badgeProvider?.getBadge(itemId)
+        if (flatItem.badge !== badge) {
+            val current = flatItem.badge
+            if (null == badge && current is BadgeDrawable && current.isShown) {
+                // keep drawing the badge until its exit animation completes
+                current.hide()
+                return
+            }
+            flatItem.badge?.callback = null
+            flatItem.badge = badge
+            badge?.callback = this
+            invalidate()
+        }
+    }
+
+    override fun verifyDrawable(who: Drawable): Boolean {
+        return super.verifyDrawable(who) || items.any { it.badge === who }
+    }
+
+    override fun invalidateDrawable(drawable: Drawable) {
+        super.invalidateDrawable(drawable)
+        invalidate()
+    }
+
+    private fun populateInternal(menu: MenuParser.Menu) {
+        log(Log.DEBUG, "populateInternal")
+
+        clearItems()
+
+        val parent = parent as BottomNavigation
+
+        this.menu = menu
+        this.itemFinalWidth = computeItemWidth(menu)
+        this.colorActive = menu.getColorActive()
+        this.colorInactive = menu.getColorInactive()
+        this.colorDisabled = menu.getColorDisabled()
+        this.textPaint.typeface = parent.typeface.get() ?: Typeface.DEFAULT
+
+        items = Array(menu.itemsCount) { index ->
+            val flatItem = FlatItem(menu.getItemAt(index))
+            flatItem.icon = flatItem.item.getIcon(context)
+            flatItem
+        }
+
+        for (flatItem in items) {
+            invalidateBadge(flatItem.item.id)
+        }
+
+        requestLayout()
+        invalidate()
+        accessibilityHelper.invalidateRoot()
+    }
+
+    override fun onDraw(canvas: Canvas) {
+        super.onDraw(canvas)
+
+        val textY = (height - paddingBottomItem).toFloat()
+
+        for (i in items.indices) {
+            val flatItem = items[i]
+            val color = if (!flatItem.item.isEnabled) colorDisabled else if (i == selectedIndex) colorActive else colorInactive
+
+            flatItem.icon?.let {
+                it.colorFilter = IconColorFilters.get(color)
+                it.alpha = Color.alpha(color)
+                it.draw(canvas)
+
+                flatItem.badge?.let { badge ->
+                    val bounds = it.bounds
+                    badge.setBounds(bounds.right - badge.intrinsicWidth, bounds.top, bounds.right,
+                            bounds.top + badge.intrinsicHeight)
+                    badge.draw(canvas)
+                }
+            }
+
+            textPaint.color = color
+            canvas.drawText(flatItem.label, flatItem.textX, textY, textPaint)
+        }
+    }
+
+    private fun findItemAt(x: Float, y: Float): Int {
+        if (y < 0 || y > height) {
+            return -1
+        }
+        for (i in items.indices) {
+            val bounds = items[i].bounds
+            if (x >= bounds.left && x < bounds.right) {
+                return i
+            }
+        }
+        return -1
+    }
+
+    private fun performItemClick(index: Int) {
+        itemClickListener?.onItemClick(this, this, index, true)
+        accessibilityHelper.sendEventForVirtualView(index, AccessibilityEvent.TYPE_VIEW_CLICKED)
+    }
+
+    private fun cancelTouch(event: MotionEvent) {
+        removeCallbacks(longPressRunnable)
+        if (touchIndex > -1) {
+            itemClickListener?.onItemDown(this, this, false, event.x, event.y)
+            touchIndex = -1
+        }
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    override fun onTouchEvent(event: MotionEvent): Boolean {
+        when (event.actionMasked) {
+            MotionEvent.ACTION_DOWN -> {
+                val index = findItemAt(event.x, event.y)
+                if (index < 0 || !items[index].item.isEnabled) {
+                    return false
+                }
+                touchIndex = index
+                longPressed = false
+                itemClickListener?.onItemDown(this, this, true, event.x, event.y)
+                postDelayed(longPressRunnable, ViewConfiguration.getLongPressTimeout().toLong())
+                return true
+            }
+
+            MotionEvent.ACTION_MOVE -> {
+                if (touchIndex > -1 && findItemAt(event.x, event.y) != touchIndex) {
+                    cancelTouch(event)
+                }
+                return true
+            }
+
+            MotionEvent.ACTION_UP -> {
+                val index = touchIndex
+                val clicked = index > -1 && !longPressed
+                cancelTouch(event)
+                if (clicked) {
+                    playSoundEffect(SoundEffectConstants.CLICK)
+                    performItemClick(index)
+                }
+                return true
+            }
+
+            MotionEvent.ACTION_CANCEL -> {
+                cancelTouch(event)
+                return true
+            }
+        }
+        return super.onTouchEvent(event)
+    }
+
+    override fun dispatchHoverEvent(event: MotionEvent): Boolean {
+        return accessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event)
+    }
+
+    override fun dispatchKeyEvent(event: KeyEvent): Boolean {
+        return accessibilityHelper.dispatchKeyEvent(event) || super.dispatchKeyEvent(event)
+    }
+
+    override fun onFocusChanged(gainFocus: Boolean, direction: Int, previouslyFocusedRect: Rect?) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect)
+        accessibilityHelper.onFocusChanged(gainFocus, direction, previouslyFocusedRect)
+    }
+
+    private inner class AccessibilityHelper : ExploreByTouchHelper(this@FlatLayout) {
+        override fun getVirtualViewAt(x: Float, y: Float): Int {
+            val index = findItemAt(x, y)
+            return if (index < 0) ExploreByTouchHelper.INVALID_ID else index
+        }
+
+        override fun getVisibleVirtualViews(virtualViewIds: MutableList<Int>) {
+            for (i in items.indices) {
+                virtualViewIds.add(i)
+            }
+        }
+
+        @Suppress("DEPRECATION")
+        override fun onPopulateNodeForVirtualView(virtualViewId: Int, node: AccessibilityNodeInfoCompat) {
+            if (virtualViewId >= items.size) {
+                node.contentDescription = ""
+                node.setBoundsInParent(Rect())
+                return
+            }
+
+            val flatItem = items[virtualViewId]
+            node.className = Button::class.java.name
+            node.contentDescription = flatItem.item.title
+            node.setBoundsInParent(flatItem.bounds)
+            node.isEnabled = flatItem.item.isEnabled
+            node.isSelected = virtualViewId == selectedIndex
+            node.isClickable = true
+            node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK)
+        }
+
+        override fun onPerformActionForVirtualView(virtualViewId: Int, action: Int, arguments: Bundle?): Boolean {
+            if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && virtualViewId < items.size
+                && items[virtualViewId].item.isEnabled) {
+                performItemClick(virtualViewId)
+                return true
+            }
+            return false
+        }
+    }
+}
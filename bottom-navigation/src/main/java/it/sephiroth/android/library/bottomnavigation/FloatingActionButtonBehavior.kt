@@ -17,50 +17,87 @@ class FloatingActionButtonBehavior(context: Context,
                                    attrs: AttributeSet) : CoordinatorLayout.Behavior<FloatingActionButton>(context, attrs) {
     private var navigationBarHeight = 0
 
+    private var fab: FloatingActionButton? = null
+    private var snackbar: View? = null
+    private var navigation: BottomNavigation? = null
+
+    /**
+     * The navigation position is received once per frame from its [NavigationOffset]
+     * instead of a CoordinatorLayout dependency
+     */
+    private val offsetListener = object : NavigationOffset.Listener {
+        override fun onNavigationOffsetChanged(offset: NavigationOffset) {
+            fab?.let { update(it) }
+        }
+    }
+
     override fun onAttachedToLayoutParams(lp: CoordinatorLayout.LayoutParams) {
         // super.onAttachedToLayoutParams(lp);
     }
 
+    override fun onDetachedFromLayoutParams() {
+        super.onDetachedFromLayoutParams()
+        setNavigation(null)
+        fab = null
+        snackbar = null
+    }
+
     override fun layoutDependsOn(parent: CoordinatorLayout, child: FloatingActionButton, dependency: View): Boolean {
-        if (BottomNavigation::class.java.isInstance(dependency)) {
-            return true
-        } else if (Snackbar.SnackbarLayout::class.java.isInstance(dependency)) {
+        if (dependency is BottomNavigation) {
+            fab = child
+            setNavigation(dependency)
+            return false
+        } else if (dependency is Snackbar.SnackbarLayout) {
             return true
         }
         return super.layoutDependsOn(parent, child, dependency)
     }
 
+    private fun setNavigation(navigation: BottomNavigation?) {
+        if (this.navigation !== navigation) {
+            this.navigation?.offset?.removeListener(offsetListener)
+            this.navigation = navigation
+            navigation?.offset?.addListener(offsetListener)
+        }
+    }
+
     override fun onDependentViewChanged(
             parent: CoordinatorLayout, child: FloatingActionButton, dependency: View): Boolean {
         Timber.v("onDependentViewChanged: $dependency")
+        snackbar = dependency
+        return update(child)
+    }
 
-        val list = parent.getDependencies(child)
+    private fun update(child: FloatingActionButton): Boolean {
         val bottomMargin = (child.layoutParams as ViewGroup.MarginLayoutParams).bottomMargin
 
         var t = 0f
         var t2 = 0f
         var result = false
 
-        for (dep in list) {
-            if (dep is Snackbar.SnackbarLayout) {
-                t += if(dep.layoutParams is ViewGroup.MarginLayoutParams) {
-                    dep.translationY - (dep.layoutParams as ViewGroup.MarginLayoutParams).bottomMargin
+        snackbar?.let { dep ->
+            // read from the snackbar position, which reflects both its bottom margin and the offset
+            // applied by BottomBehavior in bbn_translateSnackbar mode
+            val parent = dep.parent as? View
+            t += if (null != parent) {
+                dep.translationY + dep.bottom - (parent.height - parent.paddingBottom)
+            } else {
+                dep.translationY - dep.height
+            }
+            result = true
+        }
+
+        navigation?.let {
+            val offset = it.offset
+            t2 = offset.translation - offset.height + bottomMargin
+            t += t2
+            result = true
+
+            if (navigationBarHeight > 0) {
+                if (!offset.isExpanded) {
+                    child.hide()
                 } else {
-                    dep.translationY - dep.height
-                }
-                result = true
-            } else if (dep is BottomNavigation) {
-                val navigation = dep
-                t2 = navigation.translationY - navigation.height + bottomMargin
-                t += t2
-                result = true
-
-                if (navigationBarHeight > 0) {
-                    if (!navigation.isExpanded) {
-                        child.hide()
-                    } else {
-                        child.show()
-                    }
+                    child.show()
                 }
             }
         }
@@ -77,6 +114,10 @@ class FloatingActionButtonBehavior(context: Context,
             parent: CoordinatorLayout, child: FloatingActionButton, dependency: View) {
         super.onDependentViewRemoved(parent, child, dependency)
         Timber.v("onDependentViewRemoved: $dependency")
+        if (snackbar === dependency) {
+            snackbar = null
+            update(child)
+        }
     }
 
     fun setNavigationBarHeight(height: Int) {
@@ -0,0 +1,75 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.ColorFilter
+import android.graphics.Paint
+import android.graphics.PixelFormat
+import android.graphics.Rect
+import android.graphics.drawable.Drawable
+import android.util.SparseIntArray
+
+/**
+ * Rasterizes all the menu icons, once, into a single alpha-only bitmap.
+ *
+ * Icons are always drawn tinted with a single color (active, inactive, disabled or any
+ * intermediate color during a transition), so storing their coverage mask is enough:
+ * drawing an [Bitmap.Config.ALPHA_8] bitmap uses the paint color, which means every state
+ * and every animation frame is rendered by the same blit without any color filter.
+ *
+ * The atlas is built on a background thread, see [BottomNavigation.getIconAtlas].
+ */
+internal class IconAtlas(context: Context, internal val menu: MenuParser.Menu, internal val iconSize: Int) {
+    private val bitmap: Bitmap
+    private val indices = SparseIntArray()
+
+    init {
+        val count = menu.itemsCount
+        bitmap = Bitmap.createBitmap(Math.max(1, iconSize * count), Math.max(1, iconSize), Bitmap.Config.ALPHA_8)
+
+        val canvas = Canvas(bitmap)
+        for (i in 0 until count) {
+            val item = menu.getItemAt(i)
+            indices.put(item.id, i)
+            item.getIcon(context)?.let {
+                it.setBounds(i * iconSize, 0, (i + 1) * iconSize, iconSize)
+                it.draw(canvas)
+            }
+        }
+    }
+
+    /**
+     * Returns a drawable showing the icon of the item, tinted with the passed paint color,
+     * or null if the item is not part of this atlas
+     */
+    fun newIcon(itemId: Int, paint: Paint): Drawable? {
+        val index = indices.get(itemId, -1)
+        return if (index < 0) null else Icon(index, paint)
+    }
+
+    /**
+     * Region of the atlas bitmap, drawn into the drawable bounds
+     */
+    private inner class Icon(index: Int, private val paint: Paint) : Drawable() {
+        private val srcRect = Rect(index * iconSize, 0, (index + 1) * iconSize, iconSize)
+
+        override fun draw(canvas: Canvas) {
+            canvas.drawBitmap(bitmap, srcRect, bounds, paint)
+        }
+
+        override fun getIntrinsicWidth(): Int = iconSize
+
+        override fun getIntrinsicHeight(): Int = iconSize
+
+        override fun setAlpha(alpha: Int) {
+            paint.alpha = alpha
+        }
+
+        override fun setColorFilter(colorFilter: ColorFilter?) {
+            paint.colorFilter = colorFilter
+        }
+
+        override fun getOpacity(): Int = PixelFormat.TRANSLUCENT
+    }
+}
@@ -0,0 +1,66 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.content.Context
+import android.graphics.drawable.Drawable
+import android.util.LruCache
+import androidx.annotation.DrawableRes
+import androidx.appcompat.content.res.AppCompatResources
+
+/**
+ * Shared cache of the menu icons.
+ *
+ * Every icon is decoded once per resource id, [ThemeKey] and density, then each item view
+ * receives its own mutable copy created from the shared [Drawable.ConstantState].
+ */
+@Suppress("unused")
+object IconCache {
+    private const val MAX_SIZE = 32
+
+    private data class Key(val resId: Int, val theme: ThemeKey, val densityDpi: Int) {
+        fun immutable() = Key(resId, theme.immutable(), densityDpi)
+    }
+
+    private val cache = LruCache<Key, Drawable.ConstantState>(MAX_SIZE)
+
+    val hitCount: Int
+        get() = cache.hitCount()
+
+    val missCount: Int
+        get() = cache.missCount()
+
+    /**
+     * Returns a new mutated drawable for the passed resource id
+     */
+    fun getDrawable(context: Context, @DrawableRes resId: Int): Drawable? {
+        val key = key(context, resId)
+        val state = cache.get(key)
+        if (null != state) {
+            return state.newDrawable(context.resources).mutate()
+        }
+
+        val drawable = AppCompatResources.getDrawable(context, resId) ?: return null
+        drawable.constantState?.let { cache.put(key.immutable(), it) }
+        return drawable.mutate()
+    }
+
+    /**
+     * Decode all the menu icons which are not yet in cache. Can be called from any thread.
+     */
+    fun preload(context: Context, menu: MenuParser.Menu) {
+        val items = menu.items ?: return
+        for (item in items) {
+            val key = key(context, item.iconResource)
+            if (null == cache.get(key)) {
+                AppCompatResources.getDrawable(context, item.iconResource)?.constantState?.let { cache.put(key.immutable(), it) }
+            }
+        }
+    }
+
+    fun clear() {
+        cache.evictAll()
+    }
+
+    private fun key(context: Context, resId: Int): Key {
+        return Key(resId, ThemeKey.of(context), context.resources.displayMetrics.densityDpi)
+    }
+}
@@ -0,0 +1,30 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.graphics.ColorFilter
+import android.graphics.PorterDuff
+import android.graphics.PorterDuffColorFilter
+import android.util.SparseArray
+
+/**
+ * Shared SRC_ATOP color filters used to tint the item icons.
+ *
+ * Transitions produce a bounded set of colors (see [ItemColorTransition.STEPS]), so once
+ * warmed up tinting an icon never allocates a new filter. Main thread only.
+ */
+internal object IconColorFilters {
+    private const val MAX_SIZE = 256
+
+    private val filters = SparseArray<ColorFilter>()
+
+    fun get(color: Int): ColorFilter {
+        var filter = filters.get(color)
+        if (null == filter) {
+            if (filters.size() >= MAX_SIZE) {
+                filters.clear()
+            }
+            filter = PorterDuffColorFilter(color, PorterDuff.Mode.SRC_ATOP)
+            filters.put(color, filter)
+        }
+        return filter
+    }
+}
@@ -0,0 +1,89 @@
+package it.sephiroth.android.library.bottomnavigation
+
+/**
+ * Primitive color and alpha interpolation used by the item views on every animation frame.
+ *
+ * Nothing is allocated after [start]: values are computed in place and exposed as plain ints.
+ * Colors are interpolated on a fixed number of [STEPS], so that the set of colors produced by
+ * a transition is bounded and their color filters can be reused (see [IconColorFilters]).
+ * This is a trade-off between banding and cached filters: with 64 steps a channel moves by at
+ * most 4 levels per step, which is not noticeable on an icon, while a transition still produces
+ * no more than 65 colors.
+ *
+ * This class must not depend on the Android framework.
+ */
+internal class ItemColorTransition {
+    private var srcColor: Int = 0
+    private var dstColor: Int = 0
+    private var srcAlpha: Float = 0f
+    private var dstAlpha: Float = 0f
+    private var expanding: Boolean = true
+
+    /**
+     * Current icon and text color
+     */
+    var color: Int = 0
+        private set
+
+    /**
+     * Current icon alpha, 0..255
+     */
+    var iconAlpha: Int = 0
+        private set
+
+    /**
+     * Current text alpha, 0..255
+     */
+    var textAlpha: Int = 0
+        private set
+
+    /**
+     * @param srcAlpha the icon alpha (0..1) of the collapsed state
+     * @param dstAlpha the icon alpha (0..1) of the expanded state
+     * @param expanding true if the item is becoming the selected one
+     */
+    fun start(srcColor: Int, dstColor: Int, srcAlpha: Float, dstAlpha: Float, expanding: Boolean) {
+        this.srcColor = srcColor
+        this.dstColor = dstColor
+        this.srcAlpha = srcAlpha
+        this.dstAlpha = dstAlpha
+        this.expanding = expanding
+    }
+
+    fun update(fraction: Float) {
+        color = blend(srcColor, dstColor, quantize(fraction))
+
+        val alpha = if (expanding) fraction else 1f - fraction
+        iconAlpha = ((srcAlpha + alpha * (dstAlpha - srcAlpha)) * ALPHA_MAX).toInt()
+        textAlpha = (alpha * dstAlpha * ALPHA_MAX).toInt()
+    }
+
+    companion object {
+        const val STEPS = 64
+        private const val ALPHA_MAX = 255f
+
+        /**
+         * Rounds the fraction to the nearest of the [STEPS] interpolation steps
+         */
+        @JvmStatic
+        fun quantize(fraction: Float): Float {
+            return Math.round(Math.min(1f, Math.max(0f, fraction)) * STEPS).toFloat() / STEPS
+        }
+
+        /**
+         * Linear interpolation of each ARGB channel
+         */
+        @JvmStatic
+        fun blend(src: Int, dst: Int, fraction: Float): Int {
+            val a = channel(src ushr 24, dst ushr 24, fraction)
+            val r = channel(src shr 16 and 0xff, dst shr 16 and 0xff, fraction)
+            val g = channel(src shr 8 and 0xff, dst shr 8 and 0xff, fraction)
+            val b = channel(src and 0xff, dst and 0xff, fraction)
+            return a shl 24 or (r shl 16) or (g shl 8) or b
+        }
+
+        private fun channel(src: Int, dst: Int, fraction: Float): Int {
+            return src + Math.round((dst - src) * fraction)
+        }
+    }
+}
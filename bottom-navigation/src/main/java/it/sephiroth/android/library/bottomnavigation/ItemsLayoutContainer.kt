@@ -1,6 +1,10 @@
 package it.sephiroth.android.library.bottomnavigation
 
 import android.content.Context
+import android.graphics.Rect
+import android.util.SparseArray
+import android.util.SparseIntArray
+import android.view.View
 import android.view.ViewGroup
 
 /**
@@ -17,7 +21,119 @@ abstract class ItemsLayoutContainer(context: Context) : ViewGroup(context) {
 
     var itemClickListener: OnItemClickListener? = null
 
+    /**
+     * Menu item id to item position
+     */
+    private val itemIndices = SparseIntArray()
+
+    /**
+     * Map the menu item ids to their position. Must be called by the subclasses
+     * every time a new menu is populated.
+     */
+    protected fun indexItems(menu: MenuParser.Menu?) {
+        itemIndices.clear()
+        if (null != menu) {
+            for (i in 0 until menu.itemsCount) {
+                itemIndices.put(menu.getItemAt(i).id, i)
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the menu item with the given id, -1 if not found
+     */
+    fun getItemIndexById(itemId: Int): Int {
+        return itemIndices.get(itemId, -1)
+    }
+
     abstract fun removeAll()
 
     abstract fun setItemEnabled(index: Int, enabled: Boolean)
+
+    /**
+     * Item views of the previous menu, by item id, while [updateItems] is running
+     */
+    private val recycledViews = SparseArray<BottomNavigationItemViewAbstract>()
+
+    /**
+     * Apply the passed menu, matching the existing item views by item id: the views of the items
+     * found in both menus are kept (and moved if needed), only the views of the new items are
+     * created and the ones of the removed items are dropped. The selection follows the selected
+     * item id, or moves to the first item if it has been removed.
+     * The new menu must have the same appearance of the current one, see [MenuParser.Menu.hasSameAppearance].
+     */
+    open fun updateItems(menu: MenuParser.Menu) {
+        if (childCount == 0) {
+            populate(menu)
+            return
+        }
+
+        val selectedId = getChildAt(getSelectedIndex())?.id ?: View.NO_ID
+        for (i in 0 until childCount) {
+            val view = getChildAt(i) as BottomNavigationItemViewAbstract
+            recycledViews.put(view.id, view)
+        }
+
+        // the views stay attached to the window, re-attached by populate when reused
+        detachAllViewsFromParent()
+        setSelectedIndex(Math.max(0, menu.indexOfItem(selectedId)), false)
+        populate(menu)
+
+        for (i in 0 until recycledViews.size()) {
+            removeDetachedView(recycledViews.valueAt(i), false)
+        }
+        recycledViews.clear()
+        requestLayout()
+        invalidate()
+    }
+
+    /**
+     * Returns the view of the previous menu displaying the given item, if any.
+     * Must be added back with [addItemView].
+     */
+    internal fun reuseItemView(itemId: Int): BottomNavigationItemViewAbstract? {
+        val view = recycledViews.get(itemId) ?: return null
+        recycledViews.remove(itemId)
+        return view
+    }
+
+    /**
+     * Append an item view
+     *
+     * @param reused true if the view has been returned by [reuseItemView]
+     */
+    internal fun addItemView(view: BottomNavigationItemViewAbstract, reused: Boolean) {
+        if (reused) {
+            attachViewToParent(view, childCount, view.layoutParams)
+        } else {
+            addView(view)
+        }
+    }
+
+    /**
+     * Returns the bounds of the item at the given position, in this container coordinates
+     */
+    open fun getItemBounds(index: Int, outRect: Rect) {
+        val child = getChildAt(index)
+        if (null != child) {
+            child.getHitRect(outRect)
+        } else {
+            outRect.setEmpty()
+        }
+    }
+
+    /**
+     * Returns the position of the item associated with the passed view, as received by the [OnItemClickListener]
+     */
+    open fun getItemIndex(view: View): Int {
+        return indexOfChild(view)
+    }
+
+    /**
+     * Refresh the badge of the given menu item
+     */
+    open fun invalidateBadge(itemId: Int) {
+        val view = getChildAt(getItemIndexById(itemId)) as BottomNavigationItemViewAbstract?
+        view?.invalidateBadge()
+    }
 }
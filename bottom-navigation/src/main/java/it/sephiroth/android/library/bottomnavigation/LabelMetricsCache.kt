@@ -0,0 +1,141 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.content.Context
+import android.graphics.Paint
+import android.graphics.Typeface
+import android.os.Build
+import android.text.TextPaint
+import android.text.TextUtils
+import android.util.LruCache
+import it.sephiroth.android.library.bottonnavigation.R
+import java.util.Locale
+
+/**
+ * Shared cache of the item labels measurements.
+ *
+ * Widths and ellipsized labels are keyed by title, typeface, text size and text locale so that populating
+ * or re-laying out the items never measures the same text twice. Lookups reuse a single key
+ * and widths are stored as primitive fields, a cache hit doesn't allocate. Title widths can be
+ * computed in advance, on a background thread, using [precompute].
+ */
+@Suppress("unused")
+object LabelMetricsCache {
+    private const val MAX_SIZE = 64
+
+    private class Key(var title: String, var typeface: Typeface?, var textSize: Float, var locale: Locale) {
+        fun set(title: String, typeface: Typeface?, textSize: Float, locale: Locale): Key {
+            this.title = title
+            this.typeface = typeface
+            this.textSize = textSize
+            this.locale = locale
+            return this
+        }
+
+        override fun equals(other: Any?): Boolean {
+            return other is Key && title == other.title && typeface === other.typeface && textSize == other.textSize
+                   && locale == other.locale
+        }
+
+        override fun hashCode(): Int {
+            var result = title.hashCode()
+            result = 31 * result + (typeface?.hashCode() ?: 0)
+            result = 31 * result + java.lang.Float.floatToIntBits(textSize)
+            result = 31 * result + locale.hashCode()
+            return result
+        }
+    }
+
+    private class Metrics(val width: Float) {
+        /**
+         * Last ellipsized label and the width it has been computed for
+         */
+        var fitWidth: Int = -1
+        var fitLabel: String? = null
+    }
+
+    private val entries = LruCache<Key, Metrics>(MAX_SIZE)
+    private val lookupKey = Key("", null, 0f, Locale.ROOT)
+
+    val hitCount: Int
+        get() = entries.hitCount()
+
+    val missCount: Int
+        get() = entries.missCount()
+
+    /**
+     * Returns the width of the passed text
+     */
+    fun measure(paint: Paint, title: String): Float {
+        return metrics(paint, title).width
+    }
+
+    /**
+     * Returns the title itself if it fits in the available width, otherwise its ellipsized version
+     */
+    fun fit(paint: TextPaint, title: String, availableWidth: Int): String {
+        if (availableWidth <= 0) {
+            return title
+        }
+
+        val metrics = metrics(paint, title)
+        if (metrics.width <= availableWidth) {
+            return title
+        }
+
+        synchronized(metrics) {
+            if (metrics.fitWidth != availableWidth) {
+                metrics.fitLabel = TextUtils.ellipsize(title, paint, availableWidth.toFloat(), TextUtils.TruncateAt.END).toString()
+                metrics.fitWidth = availableWidth
+            }
+            return metrics.fitLabel!!
+        }
+    }
+
+    @Synchronized
+    private fun metrics(paint: Paint, title: String): Metrics {
+        val locale = textLocale(paint)
+        var metrics = entries.get(lookupKey.set(title, paint.typeface, paint.textSize, locale))
+        if (null == metrics) {
+            metrics = Metrics(paint.measureText(title))
+            entries.put(Key(title, paint.typeface, paint.textSize, locale), metrics)
+        }
+        return metrics
+    }
+
+    /**
+     * The same string can be shaped differently depending on the locale (CJK variants, for instance)
+     */
+    private fun textLocale(paint: Paint): Locale {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) paint.textLocale else Locale.getDefault()
+    }
+
+    /**
+     * Measure all the menu titles, for both the fixed and the shifting text sizes.
+     * Labels are ellipsized later, once the items width is known. Can be called from any thread.
+     */
+    fun precompute(context: Context, menu: MenuParser.Menu, typeface: Typeface?) {
+        val items = menu.items ?: return
+        if (items.isEmpty()) {
+            return
+        }
+
+        val res = context.resources
+        val paint = TextPaint(Paint.ANTI_ALIAS_FLAG)
+        paint.hinting = Paint.HINTING_ON
+        paint.isLinearText = true
+        paint.isSubpixelText = true
+        paint.typeface = typeface ?: Typeface.DEFAULT
+
+        // fixed items
+        paint.textSize = res.getDimensionPixelSize(R.dimen.bbn_fixed_text_size_inactive).toFloat()
+        for (item in items) {
+            measure(paint, item.title)
+        }
+
+        // shifting items
+        paint.textSize = res.getDimensionPixelSize(R.dimen.bbn_shifting_text_size).toFloat()
+        for (item in items) {
+            measure(paint, item.title)
+        }
+    }
+}
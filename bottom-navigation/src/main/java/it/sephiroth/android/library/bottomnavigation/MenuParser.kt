@@ -3,8 +3,8 @@ package it.sephiroth.android.library.bottomnavigation
 import android.content.Context
 import android.graphics.Color
 import android.util.AttributeSet
+import android.util.LruCache
 import android.util.Xml
-import androidx.core.content.ContextCompat
 import it.sephiroth.android.library.bottonnavigation.R
 import org.xmlpull.v1.XmlPullParser
 import java.util.*
@@ -103,9 +103,9 @@ class MenuParser {
         fun getRippleColor(): Int {
             if (0 == rippleColor) {
                 rippleColor = if (isShifting && !isTablet) {
-                    ContextCompat.getColor(context, R.color.bbn_shifting_item_ripple_color)
+                    ThemeColorCache.getResourceColor(context, R.color.bbn_shifting_item_ripple_color)
                 } else {
-                    ContextCompat.getColor(context, R.color.bbn_fixed_item_ripple_color)
+                    ThemeColorCache.getResourceColor(context, R.color.bbn_fixed_item_ripple_color)
                 }
             }
             return rippleColor
@@ -115,6 +115,26 @@ class MenuParser {
             return this.items!![index]
         }
 
+        /**
+         * Returns true if the menu contains an item with the given id
+         */
+        fun hasItem(itemId: Int): Boolean {
+            return indexOfItem(itemId) >= 0
+        }
+
+        /**
+         * Returns the position of the item with the given id, -1 if not found
+         */
+        fun indexOfItem(itemId: Int): Int {
+            val items = this.items ?: return -1
+            for (i in items.indices) {
+                if (items[i].id == itemId) {
+                    return i
+                }
+            }
+            return -1
+        }
+
         /**
          * Returns true if the first item of the menu
          * has a color defined
@@ -126,14 +146,32 @@ class MenuParser {
         fun setTabletMode(tablet: Boolean) {
             this.isTablet = tablet
         }
+
+        /**
+         * Returns true if the passed menu has the same appearance of this menu, meaning that the
+         * existing item views can be reused for the items found in both menus.
+         */
+        internal fun hasSameAppearance(other: Menu): Boolean {
+            if (isShifting != other.isShifting
+                || isTablet != other.isTablet
+                || itemAnimationDuration != other.itemAnimationDuration
+                || badgeColor != other.badgeColor) {
+                return false
+            }
+
+            return getColorActive() == other.getColorActive()
+                   && getColorInactive() == other.getColorInactive()
+                   && getColorDisabled() == other.getColorDisabled()
+                   && getRippleColor() == other.getRippleColor()
+        }
     }
 
     data class MenuItem(
-            var itemId: Int = 0,
-            var itemTitle: CharSequence? = null,
-            var itemIconResId: Int = 0,
-            var isItemEnabled: Boolean = false,
-            var itemColor: Int = 0
+            val itemId: Int = 0,
+            val itemTitle: CharSequence? = null,
+            val itemIconResId: Int = 0,
+            val isItemEnabled: Boolean = false,
+            val itemColor: Int = 0
                        )
 
     private fun readMenu(context: Context, attrs: AttributeSet) {
@@ -179,20 +217,135 @@ class MenuParser {
      */
     fun readItem(mContext: Context, attrs: AttributeSet) {
         val a = mContext.obtainStyledAttributes(attrs, R.styleable.BottomNavigationMenuItem)
-        item = MenuItem()
-        item?.let {
-            it.itemId = a.getResourceId(R.styleable.BottomNavigationMenuItem_android_id, 0)
-            it.itemTitle = a.getText(R.styleable.BottomNavigationMenuItem_android_title)
-            it.itemIconResId = a.getResourceId(R.styleable.BottomNavigationMenuItem_android_icon, 0)
-            it.isItemEnabled = a.getBoolean(R.styleable.BottomNavigationMenuItem_android_enabled, true)
-            it.itemColor = a.getColor(R.styleable.BottomNavigationMenuItem_android_color, 0)
-        }
+        item = MenuItem(
+                a.getResourceId(R.styleable.BottomNavigationMenuItem_android_id, 0),
+                a.getText(R.styleable.BottomNavigationMenuItem_android_title),
+                a.getResourceId(R.styleable.BottomNavigationMenuItem_android_icon, 0),
+                a.getBoolean(R.styleable.BottomNavigationMenuItem_android_enabled, true),
+                a.getColor(R.styleable.BottomNavigationMenuItem_android_color, 0))
         a.recycle()
     }
 
+    /**
+     * Immutable snapshot of a parsed menu resource. Every call to [newMenu] returns
+     * a brand new [Menu] (and new [BottomNavigationItem] instances) so that the cached
+     * template is never modified by the caller. The passed items array is copied.
+     */
+    class MenuTemplate(
+            val itemAnimationDuration: Int,
+            val background: Int,
+            val rippleColor: Int,
+            val colorActive: Int,
+            val colorInactive: Int,
+            val colorDisabled: Int,
+            val badgeColor: Int,
+            val forceFixed: Boolean,
+            items: Array<MenuItem>) {
+
+        private val items: Array<MenuItem> = items.copyOf()
+
+        val itemsCount: Int
+            get() = items.size
+
+        fun newMenu(context: Context): Menu {
+            val menu = Menu(context)
+            menu.itemAnimationDuration = itemAnimationDuration
+            menu.background = background
+            menu.rippleColor = rippleColor
+            menu.colorActive = colorActive
+            menu.colorInactive = colorInactive
+            menu.colorDisabled = colorDisabled
+            menu.badgeColor = badgeColor
+            menu.forceFixed = forceFixed
+            menu.items = Array(items.size) { index ->
+                val item = items[index]
+                val tab = BottomNavigationItem(item.itemId, item.itemIconResId, item.itemTitle.toString())
+                tab.isEnabled = item.isItemEnabled
+                tab.color = item.itemColor
+                tab
+            }
+            return menu
+        }
+    }
+
+    private data class CacheKey(val menuRes: Int, val theme: ThemeKey) {
+        fun immutable() = CacheKey(menuRes, theme.immutable())
+    }
+
     companion object {
+        private const val MAX_CACHE_SIZE = 16
+
+        private val cache = LruCache<CacheKey, MenuTemplate>(MAX_CACHE_SIZE)
+
+        /**
+         * Number of [inflateMenu] calls served from the parsed menu cache
+         */
+        val cacheHitCount: Int
+            get() = cache.hitCount()
+
+        /**
+         * Number of [inflateMenu] calls which required the xml resource to be parsed
+         */
+        val cacheMissCount: Int
+            get() = cache.missCount()
+
+        /**
+         * Removes all the parsed menu templates from the cache
+         */
+        fun clearCache() {
+            cache.evictAll()
+        }
+
+        private fun cacheKey(context: Context, menuRes: Int): CacheKey {
+            return CacheKey(menuRes, ThemeKey.of(context))
+        }
+
+        /**
+         * Inflate the menu resource. Parsed menus are cached by resource id, theme and configuration
+         * so that inflating the same menu again doesn't require any xml parsing.
+         *
+         * @return a new [Menu] instance or null if the resource cannot be parsed
+         */
         fun inflateMenu(context: Context, menuRes: Int): Menu? {
-            val list = ArrayList<BottomNavigationItem>()
+            return getMenuTemplate(context, menuRes)?.newMenu(context)
+        }
+
+        /**
+         * Returns the cached [MenuTemplate] for the given menu resource, parsing it if necessary
+         */
+        fun getMenuTemplate(context: Context, menuRes: Int): MenuTemplate? {
+            if (menuRes == 0) {
+                return null
+            }
+
+            val key = cacheKey(context, menuRes)
+            var template = cache.get(key)
+            if (null == template) {
+                template = parseMenu(context, menuRes)
+                if (null != template) {
+                    cache.put(key.immutable(), template)
+                }
+            }
+            return template
+        }
+
+        /**
+         * Returns the cached [MenuTemplate] for the given menu resource, creating it with the
+         * passed builder if necessary. Used by the generated menu factories, which share the
+         * same cache (and keys) of the parsed menus.
+         */
+        fun getMenuTemplate(context: Context, menuRes: Int, builder: () -> MenuTemplate): MenuTemplate {
+            val key = cacheKey(context, menuRes)
+            var template = cache.get(key)
+            if (null == template) {
+                template = builder()
+                cache.put(key.immutable(), template)
+            }
+            return template
+        }
+
+        private fun parseMenu(context: Context, menuRes: Int): MenuTemplate? {
+            val list = ArrayList<MenuItem>()
 
             val menuParser = MenuParser()
 
@@ -242,13 +395,7 @@ class MenuParser {
                                 unknownTagName = null
                             } else if (tagName == "item") {
                                 if (menuParser.hasItem()) {
-                                    val item = menuParser.pullItem()
-                                    val tab = BottomNavigationItem(item!!.itemId, item.itemIconResId,
-                                            item.itemTitle.toString()
-                                                                  )
-                                    tab.isEnabled = item.isItemEnabled
-                                    tab.color = item.itemColor
-                                    list.add(tab)
+                                    list.add(menuParser.pullItem()!!)
                                 }
                             } else if (tagName == "menu") {
                                 reachedEndOfMenu = true
@@ -267,9 +414,17 @@ class MenuParser {
             }
 
             if (menuParser.hasMenu()) {
-                val menu = menuParser.pullMenu()
-                menu!!.items = list.toTypedArray()
-                return menu
+                val menu = menuParser.pullMenu()!!
+                return MenuTemplate(
+                        menu.itemAnimationDuration,
+                        menu.background,
+                        menu.rippleColor,
+                        menu.colorActive,
+                        menu.colorInactive,
+                        menu.colorDisabled,
+                        menu.badgeColor,
+                        menu.forceFixed,
+                        list.toTypedArray())
             }
 
             return null
@@ -1,29 +1,22 @@
 package it.sephiroth.android.library.bottomnavigation
 
-import android.animation.Animator
 import android.annotation.SuppressLint
 import android.annotation.TargetApi
 import android.app.Activity
 import android.content.Context
 import android.content.ContextWrapper
 import android.content.res.ColorStateList
-import android.graphics.drawable.ColorDrawable
 import android.graphics.drawable.Drawable
 import android.graphics.drawable.RippleDrawable
 import android.os.Build
-import android.util.TypedValue
+import android.os.Process
 import android.view.Gravity
-import android.view.View
-import android.view.ViewAnimationUtils
 import android.view.WindowManager.LayoutParams
-import android.view.animation.DecelerateInterpolator
 import androidx.annotation.AttrRes
 import androidx.core.graphics.drawable.DrawableCompat
-import androidx.core.view.ViewCompat
-import androidx.core.view.ViewPropertyAnimatorCompat
-import androidx.core.view.ViewPropertyAnimatorListener
-import it.sephiroth.android.library.bottonnavigation.R
 import timber.log.Timber
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 
 /**
  * Created by alessandro on 4/2/16.
@@ -31,6 +24,20 @@ import timber.log.Timber
 @Suppress("unused", "UNUSED_PARAMETER")
 object MiscUtils {
 
+    /**
+     * Single background thread used to parse menus and decode icons
+     */
+    internal val backgroundExecutor: ExecutorService by lazy {
+        Executors.newSingleThreadExecutor { runnable ->
+            val thread = Thread({
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+                runnable.run()
+            }, "bbn-background")
+            thread.isDaemon = true
+            thread
+        }
+    }
+
     fun getDimensionPixelSize(context: Context, dp: Int): Int {
         return (context.resources.displayMetrics.density * dp).toInt()
     }
@@ -72,16 +79,15 @@ object MiscUtils {
     }
 
     /**
-     * Returns the current theme defined color
+     * Returns the current theme defined color. Resolved values are cached
+     * in the [ThemeColorCache]
      *
      * @param context
      * @param color
      * @return
      */
     fun getColor(context: Context, @AttrRes color: Int): Int {
-        val tv = TypedValue()
-        context.theme.resolveAttribute(color, tv, true)
-        return tv.data
+        return ThemeColorCache.getAttributeColor(context, color)
     }
 
     @TargetApi(21)
@@ -109,105 +115,6 @@ object MiscUtils {
         return gravity == Gravity.BOTTOM
     }
 
-    fun switchColor(
-            navigation: BottomNavigation,
-            v: View,
-            backgroundOverlay: View,
-            backgroundDrawable: ColorDrawable,
-            newColor: Int) {
-
-        backgroundOverlay.clearAnimation()
-
-        if (Build.VERSION.SDK_INT >= 21) {
-            val currentAnimator = backgroundOverlay.getTag(R.id.bbn_backgroundOverlay_animator) as Animator?
-            currentAnimator?.cancel()
-        }
-
-        backgroundDrawable.color = newColor
-        backgroundOverlay.visibility = View.INVISIBLE
-        @Suppress("DEPRECATION")
-        ViewCompat.setAlpha(backgroundOverlay, 1f)
-    }
-
-    fun animate(
-            navigation: BottomNavigation, v: View, backgroundOverlay: View, backgroundDrawable: ColorDrawable,
-            newColor: Int, duration: Long) {
-
-        val centerX = (v.x + v.width / 2).toInt()
-        val centerY = navigation.paddingTop + v.height / 2
-
-        backgroundOverlay.clearAnimation()
-
-        val animator: Any
-
-        if (Build.VERSION.SDK_INT >= 21) {
-
-            val currentAnimator = backgroundOverlay.getTag(R.id.bbn_backgroundOverlay_animator) as Animator?
-            currentAnimator?.cancel()
-
-            val startRadius = 10f
-            val finalRadius = (if (centerX > navigation.width / 2) centerX else navigation.width - centerX).toFloat()
-            animator = ViewAnimationUtils.createCircularReveal(backgroundOverlay, centerX, centerY, startRadius, finalRadius)
-            backgroundOverlay.setTag(R.id.bbn_backgroundOverlay_animator, animator)
-        } else {
-            @Suppress("DEPRECATION")
-            ViewCompat.setAlpha(backgroundOverlay, 0f)
-            animator = ViewCompat.animate(backgroundOverlay).alpha(1f)
-        }
-
-        backgroundOverlay.setBackgroundColor(newColor)
-        backgroundOverlay.visibility = View.VISIBLE
-
-        if (ViewPropertyAnimatorCompat::class.java.isInstance(animator)) {
-            (animator as ViewPropertyAnimatorCompat).setListener(object : ViewPropertyAnimatorListener {
-                var cancelled: Boolean = false
-
-                override fun onAnimationStart(view: View) {}
-
-                override fun onAnimationEnd(view: View) {
-                    if (!cancelled) {
-                        backgroundDrawable.color = newColor
-                        backgroundOverlay.visibility = View.INVISIBLE
-                        @Suppress("DEPRECATION")
-                        ViewCompat.setAlpha(backgroundOverlay, 1f)
-                    }
-                }
-
-                override fun onAnimationCancel(view: View) {
-                    cancelled = true
-                }
-            })
-                .setDuration(duration)
-                .start()
-        } else {
-            val animator1 = animator as Animator
-            animator1.duration = duration
-            animator1.interpolator = DecelerateInterpolator()
-            animator1.addListener(object : Animator.AnimatorListener {
-                var cancelled: Boolean = false
-
-                override fun onAnimationStart(animation: Animator) {}
-
-                override fun onAnimationEnd(animation: Animator) {
-                    if (!cancelled) {
-                        backgroundDrawable.color = newColor
-                        backgroundOverlay.visibility = View.INVISIBLE
-                        @Suppress("DEPRECATION")
-                        ViewCompat.setAlpha(backgroundOverlay, 1f)
-                    }
-                }
-
-                override fun onAnimationCancel(animation: Animator) {
-                    cancelled = true
-                }
-
-                override fun onAnimationRepeat(animation: Animator) {}
-            })
-
-            animator1.start()
-        }
-    }
-
     fun log(level: Int, message: String, vararg arguments: Any) {
         if (BottomNavigation.DEBUG) {
             Timber.log(level, message, arguments)
@@ -0,0 +1,87 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.view.ViewTreeObserver
+
+/**
+ * Current position of a [BottomNavigation], published once per frame.
+ *
+ * Views following the navigation (floating action buttons, snackbars, custom views) can subscribe
+ * here instead of declaring a CoordinatorLayout dependency on it. The values are read from the
+ * navigation right before it's drawn and the listeners are notified only if something changed
+ * since the previous frame. Main thread only.
+ *
+ * @see BottomNavigation.offset
+ */
+@Suppress("unused")
+class NavigationOffset internal constructor(private val navigation: BottomNavigation) : ViewTreeObserver.OnPreDrawListener {
+
+    interface Listener {
+        fun onNavigationOffsetChanged(offset: NavigationOffset)
+    }
+
+    private val listeners = ArrayList<Listener>()
+
+    /**
+     * Current navigation translationY
+     */
+    var translation: Float = 0f
+        private set
+
+    /**
+     * Current navigation view height
+     */
+    var height: Int = 0
+        private set
+
+    /**
+     * Bottom inset, when the navigation is drawn behind a translucent system navigation bar
+     */
+    var bottomInset: Int = 0
+        private set
+
+    /**
+     * True if the navigation is expanded, or expanding
+     */
+    var isExpanded: Boolean = true
+        private set
+
+    fun addListener(listener: Listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener)
+        }
+    }
+
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+
+    override fun onPreDraw(): Boolean {
+        if (listeners.isNotEmpty()) {
+            update()
+        }
+        return true
+    }
+
+    /**
+     * Read the navigation values and dispatch them if changed
+     */
+    internal fun update() {
+        val newTranslation = navigation.translationY
+        val newHeight = navigation.height
+        val newBottomInset = navigation.bottomInset
+        val newExpanded = navigation.isExpanded
+
+        if (newTranslation != translation || newHeight != height || newBottomInset != bottomInset || newExpanded != isExpanded) {
+            translation = newTranslation
+            height = newHeight
+            bottomInset = newBottomInset
+            isExpanded = newExpanded
+
+            var i = listeners.size - 1
+            while (i >= 0) {
+                listeners[i].onNavigationOffsetChanged(this)
+                i--
+            }
+        }
+    }
+}
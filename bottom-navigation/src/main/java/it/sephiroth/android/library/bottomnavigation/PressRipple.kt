@@ -0,0 +1,103 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.view.View
+
+/**
+ * Circular press feedback drawn by the [BottomNavigation] behind its items.
+ *
+ * The ripple grows from the pressed item center and fades out once released. Both phases are
+ * [TransitionDriver] transitions reused by every press: releasing while the ripple is still
+ * growing just schedules the fade, which starts when the growth completes. Main thread only.
+ */
+internal class PressRipple(private val driver: TransitionDriver, private val target: View) {
+    private val paint = Paint(Paint.ANTI_ALIAS_FLAG)
+    private var centerX: Float = 0f
+    private var centerY: Float = 0f
+    private var maxRadius: Float = 0f
+    private var radius: Float = 0f
+    private var alpha: Float = 0f
+    private var baseAlpha: Int = 0
+    private var duration: Long = 0
+    private var pressed: Boolean = false
+
+    private val expand = object : TransitionDriver.Transition() {
+        override fun onUpdate(fraction: Float) {
+            radius = maxRadius * fraction
+            driver.invalidate(target)
+        }
+
+        override fun onEnd() {
+            if (!pressed) {
+                driver.start(fade, duration, null)
+            }
+        }
+    }
+
+    private val fade = object : TransitionDriver.Transition() {
+        override fun onUpdate(fraction: Float) {
+            alpha = 1f - fraction
+            driver.invalidate(target)
+        }
+    }
+
+    val isVisible: Boolean
+        get() = alpha > 0f && radius > 0f
+
+    /**
+     * Start growing the ripple from the given point
+     *
+     * @param radius final radius of the ripple
+     */
+    fun press(x: Float, y: Float, radius: Float, color: Int, duration: Long) {
+        driver.cancel(fade)
+
+        this.pressed = true
+        this.centerX = x
+        this.centerY = y
+        this.maxRadius = radius
+        this.radius = 0f
+        this.alpha = 1f
+        this.duration = duration
+        this.baseAlpha = Color.alpha(color)
+        paint.color = color
+
+        driver.start(expand, duration, null)
+    }
+
+    /**
+     * Fade out the ripple, as soon as it's fully grown
+     */
+    fun release() {
+        if (!pressed) {
+            return
+        }
+        pressed = false
+        if (!expand.isRunning) {
+            driver.start(fade, duration, null)
+        }
+    }
+
+    /**
+     * Move the ripple center, for instance when the pressed item is moving
+     */
+    fun moveTo(x: Float, y: Float) {
+        if (centerX != x || centerY != y) {
+            centerX = x
+            centerY = y
+            if (isVisible) {
+                target.invalidate()
+            }
+        }
+    }
+
+    fun draw(canvas: Canvas) {
+        if (!isVisible) {
+            return
+        }
+        paint.alpha = (baseAlpha * alpha).toInt()
+        canvas.drawCircle(centerX, centerY, radius, paint)
+    }
+}
@@ -2,8 +2,10 @@ package it.sephiroth.android.library.bottomnavigation
 
 import android.annotation.SuppressLint
 import android.content.Context
+import android.graphics.Rect
 import android.view.MotionEvent
 import android.view.View
+import android.view.animation.DecelerateInterpolator
 import android.widget.LinearLayout
 import android.widget.Toast
 import it.sephiroth.android.library.bottonnavigation.R
@@ -24,6 +26,17 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
     private var selectedIndex: Int = 0
     private var hasFrame: Boolean = false
     private var menu: MenuParser.Menu? = null
+    private var animationDuration: Long = 0
+
+    /**
+     * Items horizontal centers before the selection change, used to compute the
+     * translation of every item once the new layout is applied
+     */
+    private var startCenters = FloatArray(0)
+    private var startTranslations = FloatArray(0)
+    private var shiftPending: Boolean = false
+    private val shiftInterpolator = DecelerateInterpolator()
+    private val shiftTransition = ShiftTransition()
 
     init {
         totalChildrenSize = 0
@@ -34,6 +47,9 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
     }
 
     override fun removeAll() {
+        indexItems(null)
+        cancelShift()
+        shiftPending = false
         removeAllViews()
         totalChildrenSize = 0
         selectedIndex = 0
@@ -62,6 +78,53 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
             setChildFrame(child, left, 0, params.width, params.height)
             left += child.width
         }
+
+        if (shiftPending) {
+            shiftPending = false
+            startShiftAnimation()
+        }
+    }
+
+    /**
+     * Items are moved to their final frame in a single layout pass, then translated back
+     * to their previous position and animated to the new one
+     */
+    private fun startShiftAnimation() {
+        val count = Math.min(childCount, startCenters.size)
+        if (startTranslations.size != count) {
+            startTranslations = FloatArray(count)
+        }
+
+        for (i in 0 until count) {
+            val child = getChildAt(i)
+            startTranslations[i] = startCenters[i] - (child.left + child.width / 2f)
+            child.translationX = startTranslations[i]
+        }
+
+        (parent as BottomNavigation?)?.transitionDriver?.start(shiftTransition, animationDuration * 2, shiftInterpolator)
+    }
+
+    private fun cancelShift() {
+        (parent as BottomNavigation?)?.transitionDriver?.cancel(shiftTransition)
+    }
+
+    private inner class ShiftTransition : TransitionDriver.Transition() {
+        override fun onUpdate(fraction: Float) {
+            val remaining = 1f - fraction
+            for (i in 0 until Math.min(childCount, startTranslations.size)) {
+                getChildAt(i).translationX = startTranslations[i] * remaining
+            }
+        }
+    }
+
+    override fun getItemBounds(index: Int, outRect: Rect) {
+        // final frame of the item, regardless of the running shift animation
+        val child = getChildAt(index)
+        if (null != child) {
+            outRect.set(child.left, child.top, child.right, child.bottom)
+        } else {
+            outRect.setEmpty()
+        }
     }
 
     override fun onSizeChanged(w: Int, h: Int, oldw: Int, oldh: Int) {
@@ -102,11 +165,28 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
 
         val willAnimate = null != current && null != child
 
-        if (!willAnimate) {
+        cancelShift()
+
+        if (willAnimate) {
+            if (startCenters.size != childCount) {
+                startCenters = FloatArray(childCount)
+            }
+            for (i in 0 until childCount) {
+                val view = getChildAt(i)
+                startCenters[i] = view.left + view.translationX + view.width / 2f
+            }
+            shiftPending = true
+        } else {
+            for (i in 0 until childCount) {
+                getChildAt(i).translationX = 0f
+            }
             totalChildrenSize = 0
-            requestLayout()
         }
 
+        current?.layoutParams?.width = minSize
+        child?.layoutParams?.width = maxSize
+        requestLayout()
+
         current?.setExpanded(false, minSize, willAnimate)
 
         child?.setExpanded(true, maxSize, willAnimate)
@@ -128,6 +208,7 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
 
     override fun populate(menu: MenuParser.Menu) {
         Timber.i("populate: $menu")
+        indexItems(menu)
 
         if (hasFrame) {
             populateInternal(menu)
@@ -186,7 +267,11 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
             Timber.v("itemWidth(dp): ${itemWidthMin / density}, ${itemWidthMax / density}")
         }
 
+        cancelShift()
+        shiftPending = false
+        totalChildrenSize = 0
         setTotalSize(itemWidthMin, itemWidthMax)
+        animationDuration = menu.itemAnimationDuration.toLong()
 
         for (i in 0 until menu.itemsCount) {
             val item = menu.getItemAt(i)
@@ -198,7 +283,10 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
                 params.width = itemWidthMax
             }
 
-            val view = BottomNavigationShiftingItemView(parent, i == selectedIndex, menu)
+            val reused = reuseItemView(item.id)
+            val view = reused ?: BottomNavigationShiftingItemView(parent, i == selectedIndex, menu)
+            view.setExpanded(i == selectedIndex, params.width, false)
+            view.translationX = 0f
             view.item = item
             view.layoutParams = params
             view.isClickable = true
@@ -220,7 +308,7 @@ class ShiftingLayout(context: Context) : ItemsLayoutContainer(context) {
                 Toast.makeText(context, item.title, Toast.LENGTH_SHORT).show()
                 true
             }
-            addView(view)
+            addItemView(view, null != reused)
         }
     }
 
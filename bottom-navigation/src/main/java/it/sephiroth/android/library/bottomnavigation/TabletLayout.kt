@@ -28,6 +28,7 @@ class TabletLayout(context: Context) : ItemsLayoutContainer(context) {
     }
 
     override fun removeAll() {
+        indexItems(null)
         removeAllViews()
         selectedIndex = 0
         menu = null
@@ -99,6 +100,7 @@ class TabletLayout(context: Context) : ItemsLayoutContainer(context) {
 
     override fun populate(menu: MenuParser.Menu) {
         Timber.v("populate: $menu")
+        indexItems(menu)
 
         if (hasFrame) {
             populateInternal(menu)
@@ -117,7 +119,9 @@ class TabletLayout(context: Context) : ItemsLayoutContainer(context) {
             val item = menu.getItemAt(i)
             Timber.v("item: $item")
             val params = LinearLayout.LayoutParams(width, itemHeight)
-            val view = BottomNavigationTabletItemView(parent, i == selectedIndex, menu)
+            val reused = reuseItemView(item.id)
+            val view = reused ?: BottomNavigationTabletItemView(parent, i == selectedIndex, menu)
+            view.setExpanded(i == selectedIndex, 0, false)
             view.item = item
             view.layoutParams = params
             view.isClickable = true
@@ -139,7 +143,7 @@ class TabletLayout(context: Context) : ItemsLayoutContainer(context) {
                 Toast.makeText(context, item.title, Toast.LENGTH_SHORT).show()
                 true
             }
-            addView(view)
+            addItemView(view, null != reused)
         }
     }
 }
@@ -0,0 +1,94 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.content.Context
+import android.util.LruCache
+import android.util.SparseIntArray
+import android.util.TypedValue
+import androidx.annotation.AttrRes
+import androidx.annotation.ColorRes
+import androidx.core.content.ContextCompat
+
+/**
+ * Theme scoped cache of the resolved color attributes and color resources used by the menu.
+ *
+ * Entries are keyed by [ThemeKey]: a different theme or configuration (night mode, locale,
+ * density...) produces a new key, so stale colors are never returned.
+ */
+@Suppress("unused")
+object ThemeColorCache {
+    private const val MAX_THEMES = 8
+
+    private class Entry {
+        val attributes = SparseIntArray()
+        val resources = SparseIntArray()
+    }
+
+    private val entries = LruCache<ThemeKey, Entry>(MAX_THEMES)
+    private val typedValue = TypedValue()
+
+    /**
+     * Number of colors actually resolved from the theme or the resources
+     */
+    @Volatile
+    var lookupCount: Int = 0
+        private set
+
+    /**
+     * Number of colors served from the cache
+     */
+    @Volatile
+    var hitCount: Int = 0
+        private set
+
+    /**
+     * Returns the color value of the theme attribute
+     */
+    fun getAttributeColor(context: Context, @AttrRes attr: Int): Int {
+        return getColor(context, attr, false)
+    }
+
+    /**
+     * Returns the color value of the color resource, using the context theme
+     */
+    fun getResourceColor(context: Context, @ColorRes resId: Int): Int {
+        return getColor(context, resId, true)
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.evictAll()
+    }
+
+    @Synchronized
+    fun resetCounters() {
+        lookupCount = 0
+        hitCount = 0
+    }
+
+    @Synchronized
+    private fun getColor(context: Context, id: Int, resource: Boolean): Int {
+        val key = ThemeKey.of(context)
+        var entry = entries.get(key)
+        if (null == entry) {
+            entry = Entry()
+            entries.put(key.immutable(), entry)
+        }
+
+        val values = if (resource) entry.resources else entry.attributes
+        val index = values.indexOfKey(id)
+        if (index >= 0) {
+            hitCount++
+            return values.valueAt(index)
+        }
+
+        lookupCount++
+        val color = if (resource) {
+            ContextCompat.getColor(context, id)
+        } else {
+            context.theme.resolveAttribute(id, typedValue, true)
+            typedValue.data
+        }
+        values.put(id, color)
+        return color
+    }
+}
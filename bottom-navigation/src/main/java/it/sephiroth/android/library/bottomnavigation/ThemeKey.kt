@@ -0,0 +1,70 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.content.Context
+import android.content.res.Configuration
+import android.content.res.Resources
+import android.os.Build
+import java.lang.ref.WeakReference
+
+/**
+ * Comparable identity of a context theme and configuration, used as cache key by [MenuParser],
+ * [ThemeColorCache] and [IconCache].
+ *
+ * Starting from Nougat the theme hash code is computed from the style resources applied to it,
+ * so two themes built from the same styles share the cached entries while any
+ * [Resources.Theme.applyStyle] produces a new key. On older versions the hash code is the identity
+ * one: entries are then bound to the theme instance. Configurations are compared with equals.
+ *
+ * Keys returned by [of] reference the live context values and are meant for lookups only,
+ * [immutable] must be used to store them.
+ */
+internal class ThemeKey private constructor(
+        private val themeHash: Int,
+        private val theme: Resources.Theme?,
+        private val themeRef: WeakReference<Resources.Theme>?,
+        private val configuration: Configuration) {
+
+    private val hash = 31 * themeHash + configuration.hashCode()
+
+    /**
+     * Returns a copy of this key which can be stored in a cache
+     */
+    fun immutable(): ThemeKey {
+        return if (null == theme) this
+        else ThemeKey(themeHash, null, if (STYLE_HASH) null else WeakReference(theme), Configuration(configuration))
+    }
+
+    private fun sameTheme(other: ThemeKey): Boolean {
+        if (themeHash != other.themeHash) {
+            return false
+        }
+        if (STYLE_HASH) {
+            return true
+        }
+        val current = theme ?: themeRef?.get()
+        return null != current && current === (other.theme ?: other.themeRef?.get())
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) {
+            return true
+        }
+        return other is ThemeKey && hash == other.hash && sameTheme(other) && configuration == other.configuration
+    }
+
+    override fun hashCode(): Int {
+        return hash
+    }
+
+    companion object {
+        /**
+         * True if the theme hash code depends on the applied styles only
+         */
+        private val STYLE_HASH = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+
+        fun of(context: Context): ThemeKey {
+            val theme = context.theme
+            return ThemeKey(theme.hashCode(), theme, null, context.resources.configuration)
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package it.sephiroth.android.library.bottomnavigation
+
+import android.animation.TimeInterpolator
+import android.view.Choreographer
+import android.view.View
+
+/**
+ * Single animation clock shared by all the transitions of a [BottomNavigation].
+ *
+ * Every running [Transition] is advanced from the same Choreographer frame callback, views
+ * changed during a frame are invalidated once at the end of it and the callback is no longer
+ * posted as soon as nothing is animating. Main thread only.
+ */
+internal class TransitionDriver : Choreographer.FrameCallback {
+    private val choreographer: Choreographer by lazy { Choreographer.getInstance() }
+    private val transitions = ArrayList<Transition>()
+    private val dirtyViews = ArrayList<View>()
+    private var scheduled = false
+
+    val isRunning: Boolean
+        get() = transitions.isNotEmpty()
+
+    /**
+     * A property animation advanced by the driver. Instances are meant to be reused:
+     * starting a running transition restarts it from its current state.
+     */
+    abstract class Transition {
+        private var startTime: Long = -1
+        private var duration: Long = 0
+        private var interpolator: TimeInterpolator? = null
+
+        var isRunning: Boolean = false
+            internal set
+
+        /**
+         * Apply the current (interpolated) fraction
+         */
+        protected abstract fun onUpdate(fraction: Float)
+
+        /**
+         * Invoked once the transition reached its end, not when cancelled
+         */
+        protected open fun onEnd() {}
+
+        internal fun prepare(duration: Long, interpolator: TimeInterpolator?) {
+            this.startTime = -1
+            this.duration = duration
+            this.interpolator = interpolator
+        }
+
+        /**
+         * @return true if the transition needs more frames
+         */
+        internal fun frame(frameTimeNanos: Long): Boolean {
+            if (startTime < 0) {
+                startTime = frameTimeNanos
+            }
+
+            val elapsed = (frameTimeNanos - startTime) / NANOS_PER_MS
+            val linear = if (duration <= 0) 1f else Math.min(1f, elapsed / duration)
+            onUpdate(interpolator?.getInterpolation(linear) ?: linear)
+            return linear < 1f
+        }
+
+        internal fun finish() {
+            onUpdate(1f)
+            onEnd()
+        }
+
+        internal fun end() {
+            onEnd()
+        }
+    }
+
+    fun start(transition: Transition, duration: Long, interpolator: TimeInterpolator?) {
+        transition.prepare(duration, interpolator)
+        if (!transition.isRunning) {
+            transition.isRunning = true
+            transitions.add(transition)
+        }
+        schedule()
+    }
+
+    /**
+     * Stop the transition where it is, without invoking its end callback
+     */
+    fun cancel(transition: Transition) {
+        if (transition.isRunning) {
+            transition.isRunning = false
+            transitions.remove(transition)
+        }
+    }
+
+    /**
+     * Jump every running transition to its final state
+     */
+    fun finishAll() {
+        while (transitions.isNotEmpty()) {
+            val transition = transitions.removeAt(transitions.size - 1)
+            transition.isRunning = false
+            transition.finish()
+        }
+        flushInvalidations()
+        if (scheduled) {
+            choreographer.removeFrameCallback(this)
+            scheduled = false
+        }
+    }
+
+    /**
+     * Invalidate the view at the end of the current frame. Multiple requests
+     * for the same view are coalesced.
+     */
+    fun invalidate(view: View) {
+        if (!dirtyViews.contains(view)) {
+            dirtyViews.add(view)
+        }
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        scheduled = false
+
+        var i = 0
+        while (i < transitions.size) {
+            val transition = transitions[i]
+            if (transition.frame(frameTimeNanos)) {
+                i++
+            } else {
+                transitions.removeAt(i)
+                transition.isRunning = false
+                transition.end()
+            }
+        }
+
+        flushInvalidations()
+
+        if (transitions.isNotEmpty()) {
+            schedule()
+        }
+    }
+
+    private fun flushInvalidations() {
+        for (i in 0 until dirtyViews.size) {
+            dirtyViews[i].invalidate()
+        }
+        dirtyViews.clear()
+    }
+
+    private fun schedule() {
+        if (!scheduled) {
+            scheduled = true
+            choreographer.postFrameCallback(this)
+        }
+    }
+
+    companion object {
+        private const val NANOS_PER_MS = 1000000f
+    }
+}
@@ -0,0 +1,151 @@
+package it.sephiroth.android.library.bottomnavigation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BadgeAnimatorTest {
+    private static final long FRAME_NANOS = 16000000L;
+    private static final int MAX_FRAMES = 1000;
+
+    private CountingHost host;
+    private BadgeAnimator animator;
+    private long frameTime;
+
+    @Before
+    public void setUp() throws Exception {
+        host = new CountingHost();
+        animator = new BadgeAnimator(host);
+        frameTime = 0;
+    }
+
+    @Test
+    public void show_invalidatesOncePerFrameThenGoesIdle() throws Exception {
+        animator.show();
+        int frames = runUntilIdle();
+
+        assertTrue(animator.isIdle());
+        assertEquals(1f, animator.getAlpha(), 0f);
+        assertEquals(1f, animator.getScale(), 0f);
+
+        // one frame per 16ms of the enter animation, plus the first (start) frame
+        assertEquals(expectedFrames(animator.getEnterDuration()), frames);
+        assertEquals(frames, host.frameRequests);
+        assertEquals(frames, host.invalidations);
+
+        assertIdleWithoutWork();
+    }
+
+    @Test
+    public void remove_invalidatesOncePerFrameThenGoesIdle() throws Exception {
+        animator.show();
+        runUntilIdle();
+        host.reset();
+
+        animator.hide();
+        int frames = runUntilIdle();
+
+        assertTrue(animator.isIdle());
+        assertFalse(animator.isShown());
+        assertEquals(0f, animator.getAlpha(), 0f);
+        assertEquals(expectedFrames(animator.getExitDuration()), frames);
+        assertEquals(frames, host.invalidations);
+
+        assertIdleWithoutWork();
+    }
+
+    @Test
+    public void repeatedShow_doesNotInvalidate() throws Exception {
+        animator.show();
+        runUntilIdle();
+        host.reset();
+
+        animator.show();
+        animator.show();
+        assertEquals(0, host.frameRequests);
+        assertEquals(0, host.invalidations);
+    }
+
+    @Test
+    public void change_playsPulseAndReturnsToScale() throws Exception {
+        animator.show();
+        runUntilIdle();
+        host.reset();
+
+        animator.change();
+        int frames = runUntilIdle();
+        assertEquals(expectedFrames(animator.getChangeDuration()), frames);
+        assertEquals(1f, animator.getScale(), 0f);
+        assertIdleWithoutWork();
+    }
+
+    @Test
+    public void noEffect_invalidatesOnce() throws Exception {
+        animator.setEnterEffect(BadgeAnimator.Effect.NONE);
+        animator.show();
+        assertEquals(0, host.frameRequests);
+        assertEquals(1, host.invalidations);
+        assertTrue(animator.isIdle());
+    }
+
+    @Test
+    public void finish_jumpsToEnd() throws Exception {
+        animator.show();
+        animator.finish();
+        assertTrue(animator.isIdle());
+        assertEquals(1f, animator.getAlpha(), 0f);
+
+        // the frame already requested is consumed without invalidating
+        host.reset();
+        animator.doFrame(frameTime);
+        assertEquals(0, host.invalidations);
+    }
+
+    private static int expectedFrames(long durationMs) {
+        return (int) Math.ceil(durationMs * 1000000.0 / FRAME_NANOS) + 1;
+    }
+
+    /**
+     * Run frames while the animator requests them
+     */
+    private int runUntilIdle() {
+        int frames = 0;
+        while (host.pendingFrame && frames < MAX_FRAMES) {
+            host.pendingFrame = false;
+            animator.doFrame(frameTime);
+            frameTime += FRAME_NANOS;
+            frames++;
+        }
+        return frames;
+    }
+
+    private void assertIdleWithoutWork() {
+        assertFalse("no pending frame", host.pendingFrame);
+        int invalidations = host.invalidations;
+        animator.doFrame(frameTime + FRAME_NANOS * 10);
+        assertEquals("idle frames don't invalidate", invalidations, host.invalidations);
+    }
+
+    private static class CountingHost implements BadgeAnimator.Host {
+        int frameRequests;
+        int invalidations;
+        boolean pendingFrame;
+
+        @Override
+        public void requestFrame() {
+            frameRequests++;
+            pendingFrame = true;
+        }
+
+        @Override
+        public void invalidate() {
+            invalidations++;
+        }
+
+        void reset() {
+            frameRequests = 0;
+            invalidations = 0;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package it.sephiroth.android.library.bottomnavigation;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+public class ItemColorTransitionTest {
+    private static final int COLOR_ACTIVE = 0xFFFFFFFF;
+    private static final int COLOR_INACTIVE = 0x80FFFFFF;
+    private static final int FRAMES = 1000;
+
+    @Test
+    public void blend_endpoints() throws Exception {
+        assertEquals(COLOR_INACTIVE, ItemColorTransition.blend(COLOR_INACTIVE, COLOR_ACTIVE, 0f));
+        assertEquals(COLOR_ACTIVE, ItemColorTransition.blend(COLOR_INACTIVE, COLOR_ACTIVE, 1f));
+        assertEquals(0xFF808080, ItemColorTransition.blend(0xFF000000, 0xFFFFFFFF, 0.5f));
+    }
+
+    @Test
+    public void quantize_isBounded() throws Exception {
+        assertEquals(0f, ItemColorTransition.quantize(-1f), 0f);
+        assertEquals(1f, ItemColorTransition.quantize(2f), 0f);
+        assertEquals(0.5f, ItemColorTransition.quantize(0.49f), 1f / ItemColorTransition.STEPS);
+    }
+
+    @Test
+    public void transition_reachesFinalState() throws Exception {
+        ItemColorTransition transition = new ItemColorTransition();
+        transition.start(COLOR_INACTIVE, COLOR_ACTIVE, 0.5f, 1f, true);
+        transition.update(1f);
+        assertEquals(COLOR_ACTIVE, transition.getColor());
+        assertEquals(255, transition.getIconAlpha());
+        assertEquals(255, transition.getTextAlpha());
+
+        transition.start(COLOR_ACTIVE, COLOR_INACTIVE, 0.5f, 1f, false);
+        transition.update(1f);
+        assertEquals(COLOR_INACTIVE, transition.getColor());
+        assertEquals(127, transition.getIconAlpha());
+        assertEquals(0, transition.getTextAlpha());
+    }
+
+    @Test
+    public void transition_doesNotAllocatePerFrame() throws Exception {
+        // per thread allocation counters are a HotSpot extension, accessed by reflection so that
+        // the test is skipped (and not failing with a NoClassDefFoundError) on other VMs
+        Class<?> beanClass;
+        try {
+            beanClass = Class.forName("com.sun.management.ThreadMXBean");
+        } catch (ClassNotFoundException e) {
+            beanClass = null;
+        }
+        Assume.assumeNotNull(beanClass);
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(beanClass.isInstance(bean));
+        Assume.assumeTrue((Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(bean));
+        beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+
+        Method allocatedBytes = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        long threadId = Thread.currentThread().getId();
+        ItemColorTransition expanding = new ItemColorTransition();
+        ItemColorTransition collapsing = new ItemColorTransition();
+
+        // warm-up, the reflective accessor included
+        for (int i = 0; i < 20; i++) {
+            runSelection(expanding, collapsing);
+            allocatedBytes.invoke(bean, threadId);
+        }
+
+        // cost of the measurement itself
+        long start = (Long) allocatedBytes.invoke(bean, threadId);
+        long overhead = (Long) allocatedBytes.invoke(bean, threadId) - start;
+
+        start = (Long) allocatedBytes.invoke(bean, threadId);
+        int checksum = runSelection(expanding, collapsing);
+        long allocated = (Long) allocatedBytes.invoke(bean, threadId) - start - overhead;
+
+        assertEquals("bytes allocated during " + FRAMES + " frames", 0, allocated);
+        assertNotEquals(0, checksum);
+    }
+
+    /**
+     * One selection change: the previous item collapses while the new one expands
+     */
+    private static int runSelection(ItemColorTransition expanding, ItemColorTransition collapsing) {
+        int checksum = 0;
+        expanding.start(COLOR_INACTIVE, COLOR_ACTIVE, 0.5f, 1f, true);
+        collapsing.start(COLOR_ACTIVE, COLOR_INACTIVE, 0.5f, 1f, false);
+        for (int frame = 0; frame <= FRAMES; frame++) {
+            float fraction = (float) frame / FRAMES;
+            expanding.update(fraction);
+            collapsing.update(fraction);
+            checksum += expanding.getColor() ^ collapsing.getIconAlpha() ^ expanding.getTextAlpha();
+        }
+        return checksum;
+    }
+}